@@ -0,0 +1,40 @@
+package com.csc301.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line (all of them by default) with the GC profiler, which records the
+ * bytes allocated per operation and the garbage collections, and writes the results as JSON to target/jmh-result.json,
+ * so that the results of two builds can be diffed. Any JMH option can be given on the command line, including -rf and
+ * -rff to write the results somewhere else.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		if (commandLine.shouldHelp() || commandLine.shouldList()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+				.resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+				.result(commandLine.getResult().orElse("target/jmh-result.json"));
+
+		boolean gcProfiled = commandLine.getProfilers().stream()
+				.anyMatch(profiler -> profiler.getKlass().equals("gc")
+						|| profiler.getKlass().equals(GCProfiler.class.getName()));
+
+		if (!gcProfiled) {
+			options.addProfiler(GCProfiler.class);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
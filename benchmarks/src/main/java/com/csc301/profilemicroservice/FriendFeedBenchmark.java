@@ -0,0 +1,118 @@
+package com.csc301.profilemicroservice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+
+/**
+ * Measures assembling the response of /getAllFriendFavouriteSongTitles in ProfileController, from the songIds liked by
+ * each friend to the titles of their songs, and serializing it. Neo4j is replaced by a driver that returns the same
+ * songIds every time, and every title is already in the song metadata cache, so no calls are made to the Song
+ * Microservice and only the work done in the controller is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FriendFeedBenchmark {
+
+	private static final String USER_NAME = "bench-user";
+
+	// The number of friends the user follows
+	@Param({ "10", "100" })
+	public int friends;
+
+	// The number of songs each friend has liked
+	@Param({ "20" })
+	public int songsPerFriend;
+
+	// The number of distinct songs the friends' likes are drawn from, so that friends share some of their songs
+	@Param({ "500" })
+	public int catalogueSize;
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private ProfileController profileController;
+
+	private MockHttpServletRequest request;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		SongMetadataCache songMetadataCache = new SongMetadataCache(100000, 3600, 60, new SimpleMeterRegistry());
+
+		for (int i = 0; i < catalogueSize; i++) {
+			songMetadataCache.putSongTitle(songId(i), "Song Title Number " + i, songMetadataCache.getGeneration());
+		}
+
+		Map<String, List<String>> friendsSongIds = new HashMap<String, List<String>>();
+
+		for (int i = 0; i < friends; i++) {
+			List<String> songIds = new ArrayList<String>();
+
+			for (int j = 0; j < songsPerFriend; j++) {
+				songIds.add(songId(random.nextInt(catalogueSize)));
+			}
+			friendsSongIds.put("bench-friend-" + i, songIds);
+		}
+
+		DbQueryStatus friendsSongs = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		friendsSongs.setData(friendsSongIds);
+
+		ProfileDriverImpl profileDriver = new ProfileDriverImpl(null) {
+			@Override
+			public DbQueryStatus getAllSongFriendsLike(String userName) {
+				return friendsSongs;
+			}
+		};
+
+		SongServiceClient songServiceClient = new SongServiceClient(mapper, "http://localhost:3001", 500, 8,
+				new OkHttpClient(), Bulkhead.ofDefaults("songService"));
+
+		profileController = new ProfileController(profileDriver, null, songMetadataCache,
+				new FavouritesDeltaBuffer((batchId, favouritesDeltas) -> true, 1000, 3600), songServiceClient);
+
+		request = new MockHttpServletRequest("GET", "/getAllFriendFavouriteSongTitles/" + USER_NAME);
+		request.setServerPort(3002);
+	}
+
+	@Benchmark
+	public Object friendFeed() {
+		return profileController.getAllFriendFavouriteSongTitles(USER_NAME, request);
+	}
+
+	@Benchmark
+	public byte[] friendFeedJson() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(profileController.getAllFriendFavouriteSongTitles(USER_NAME, request));
+	}
+
+	private static String songId(int i) {
+		return String.format("5d61728193528481fe5a%04x", i);
+	}
+}
@@ -0,0 +1,219 @@
+package com.csc301.profilemicroservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Measures the Cypher paths of ProfileDriverImpl and PlaylistDriverImpl behind the busiest routes against a local
+ * Neo4j, given by the benchmark.neo4jUri, benchmark.neo4jUserName and benchmark.neo4jPassword system properties
+ * (bolt://localhost:7687 as neo4j/1234 by default). The graph is seeded with nodes whose names start with "bench-",
+ * which are deleted again once the benchmark is done. Likes and follows are undone in the same operation that makes
+ * them, so the graph stays the same size however long the benchmark runs.
+ *
+ * Each operation is both timed on average and sampled, so that the results include its p99 latency. The round trips
+ * made to Neo4j are counted through the driver, and reported as the roundTrips and operations secondary results of each
+ * iteration, whose ratio is the number of round trips per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class Neo4jDriverBenchmark {
+
+	// The number of users in the graph
+	@Param({ "500" })
+	public int users;
+
+	// The number of songs in the graph
+	@Param({ "2000" })
+	public int songs;
+
+	// The number of follows in the graph, spread evenly over the users
+	@Param({ "10000" })
+	public int follows;
+
+	// The number of songs each user likes
+	@Param({ "10" })
+	public int likesPerUser;
+
+	/**
+	 * The round trips made to Neo4j by the operations of one benchmark thread during an iteration
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class RoundTrips {
+		public long roundTrips;
+		public long operations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			roundTrips = 0;
+			operations = 0;
+		}
+	}
+
+	private RoundTripCountingDriver countingDriver;
+
+	private Driver driver;
+
+	private Neo4jTransactions transactions;
+
+	private SongDeletions songDeletions;
+
+	private ProfileDriverImpl profileDriver;
+
+	private PlaylistDriverImpl playlistDriver;
+
+	@Setup
+	public void setUp() {
+		driver = GraphDatabase.driver(System.getProperty("benchmark.neo4jUri", "bolt://localhost:7687"),
+				AuthTokens.basic(System.getProperty("benchmark.neo4jUserName", "neo4j"),
+						System.getProperty("benchmark.neo4jPassword", "1234")));
+		countingDriver = new RoundTripCountingDriver(driver);
+		transactions = new Neo4jTransactions(countingDriver.driver(), new SimpleMeterRegistry());
+		songDeletions = new SongDeletions(transactions, 10000, 3600, 10, 1000, 60000);
+		profileDriver = new ProfileDriverImpl(transactions);
+		playlistDriver = new PlaylistDriverImpl(transactions, songDeletions);
+
+		new Neo4jSchemaMigrator(transactions, 300).migrate();
+		deleteBenchmarkNodes();
+
+		Random random = new Random(42);
+
+		// The spare users and songs are never followed or liked while seeding, so the benchmarks can follow and like them
+		List<String> songIds = new ArrayList<String>();
+		for (int i = 0; i < songs; i++) {
+			songIds.add(songId(i));
+			songIds.add(spareSongId(i));
+		}
+		playlistDriver.addSongs(songIds);
+
+		for (int i = 0; i < users; i++) {
+			profileDriver.createUserProfile(userName(i), "Bench User " + i, "password");
+			profileDriver.createUserProfile(spareUserName(i), "Spare Bench User " + i, "password");
+		}
+
+		// Each user follows the users after it in turn, so that none of the follows are the same
+		if (follows >= users * (users - 1L)) {
+			throw new IllegalArgumentException("There can be at most users * (users - 1) distinct follows");
+		}
+
+		for (int i = 0; i < follows; i++) {
+			profileDriver.followFriend(userName(i % users), userName((i % users + 1 + i / users) % users));
+		}
+
+		for (int i = 0; i < users; i++) {
+			for (int j = 0; j < likesPerUser; j++) {
+				playlistDriver.likeSong(userName(i), songId(random.nextInt(songs)));
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		deleteBenchmarkNodes();
+		songDeletions.close();
+		driver.close();
+	}
+
+	@Benchmark
+	public DbQueryStatus likeAndUnlikeSong(RoundTrips roundTrips) {
+		String userName = userName(ThreadLocalRandom.current().nextInt(users));
+		String songId = spareSongId(ThreadLocalRandom.current().nextInt(songs));
+		long start = countingDriver.roundTrips();
+
+		playlistDriver.likeSong(userName, songId);
+		DbQueryStatus status = playlistDriver.unlikeSong(userName, songId);
+
+		return counted(roundTrips, start, status);
+	}
+
+	@Benchmark
+	public DbQueryStatus followAndUnfollowFriend(RoundTrips roundTrips) {
+		String userName = userName(ThreadLocalRandom.current().nextInt(users));
+		String friendUserName = spareUserName(ThreadLocalRandom.current().nextInt(users));
+		long start = countingDriver.roundTrips();
+
+		profileDriver.followFriend(userName, friendUserName);
+		DbQueryStatus status = profileDriver.unfollowFriend(userName, friendUserName);
+
+		return counted(roundTrips, start, status);
+	}
+
+	@Benchmark
+	public DbQueryStatus getAllSongFriendsLike(RoundTrips roundTrips) {
+		String userName = userName(ThreadLocalRandom.current().nextInt(users));
+		long start = countingDriver.roundTrips();
+
+		DbQueryStatus status = profileDriver.getAllSongFriendsLike(userName);
+
+		return counted(roundTrips, start, status);
+	}
+
+	/**
+	 * Adds the round trips the current thread made since the given count to its counters, as one more operation
+	 *
+	 * @param roundTrips the counters of the current thread
+	 * @param start the number of round trips the current thread had made when the operation started
+	 * @param status the result of the operation
+	 * @return the result of the operation
+	 */
+	private DbQueryStatus counted(RoundTrips roundTrips, long start, DbQueryStatus status) {
+		roundTrips.roundTrips += countingDriver.roundTrips() - start;
+		roundTrips.operations++;
+
+		return status;
+	}
+
+	private void deleteBenchmarkNodes() {
+		transactions.write("deleteBenchmarkNodes", trans -> {
+			String queryStr = "MATCH (n) WHERE n.userName STARTS WITH 'bench-' OR n.plName STARTS WITH 'bench-' "
+					+ "OR n.songId STARTS WITH 'bench-' DETACH DELETE n";
+			trans.run(queryStr).consume();
+
+			trans.success();
+			return null;
+		});
+	}
+
+	private static String userName(int i) {
+		return "bench-user-" + i;
+	}
+
+	private static String spareUserName(int i) {
+		return "bench-spare-user-" + i;
+	}
+
+	private static String songId(int i) {
+		return "bench-song-" + i;
+	}
+
+	private static String spareSongId(int i) {
+		return "bench-spare-song-" + i;
+	}
+}
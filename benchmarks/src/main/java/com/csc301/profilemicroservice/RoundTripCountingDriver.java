@@ -0,0 +1,103 @@
+package com.csc301.profilemicroservice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.TransactionWork;
+
+/**
+ * Wraps a Neo4j driver to count the round trips each thread makes to Neo4j through it. Every statement run is a round
+ * trip, and so is the commit or rollback that ends each transaction, as the driver sends the start of a transaction
+ * along with its first statement. Only the blocking API is counted, as the benchmarks run the queries on the thread
+ * that counts them.
+ */
+class RoundTripCountingDriver {
+
+	// The number of round trips made by each thread so far
+	private final ThreadLocal<long[]> roundTrips = ThreadLocal.withInitial(() -> new long[1]);
+
+	private final Driver driver;
+
+	RoundTripCountingDriver(Driver driver) {
+		this.driver = proxy(Driver.class, (proxy, method, args) -> {
+			Object result = invoke(driver, method, args);
+
+			return result instanceof Session ? countingSession((Session) result) : result;
+		});
+	}
+
+	/**
+	 * @return the driver whose sessions count their round trips
+	 */
+	Driver driver() {
+		return driver;
+	}
+
+	/**
+	 * @return the number of round trips the current thread has made through the driver so far
+	 */
+	long roundTrips() {
+		return roundTrips.get()[0];
+	}
+
+	private Session countingSession(Session session) {
+		return proxy(Session.class, (proxy, method, args) -> {
+			String name = method.getName();
+
+			boolean managed = name.equals("readTransaction") || name.equals("writeTransaction");
+
+			if (managed && args[0] instanceof TransactionWork) {
+				TransactionWork<?> work = (TransactionWork<?>) args[0];
+
+				// Each attempt at the work ends with a commit, or a rollback if it failed
+				args[0] = (TransactionWork<Object>) trans -> {
+					try {
+						return work.execute(countingTransaction(trans));
+					} finally {
+						countRoundTrip();
+					}
+				};
+			} else if (name.equals("run")) {
+				countRoundTrip();
+			}
+
+			Object result = invoke(session, method, args);
+
+			return result instanceof Transaction ? countingTransaction((Transaction) result) : result;
+		});
+	}
+
+	private Transaction countingTransaction(Transaction transaction) {
+		return proxy(Transaction.class, (proxy, method, args) -> {
+			String name = method.getName();
+
+			// Closing a transaction begun on the session commits or rolls it back
+			if (name.equals("run") || name.equals("close")) {
+				countRoundTrip();
+			}
+
+			return invoke(transaction, method, args);
+		});
+	}
+
+	private void countRoundTrip() {
+		roundTrips.get()[0]++;
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.csc301.songmicroservice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Measures the SongDalImpl operations behind the busiest routes against a local MongoDB, given by the
+ * benchmark.mongoHost and benchmark.mongoPort system properties (localhost:27017 by default). The songs are inserted
+ * into a database of their own, which is dropped once the benchmark is done.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SongDalBenchmark {
+
+	private static final String DATABASE = "csc301-benchmarks";
+
+	// The number of songs inserted per batch while seeding
+	private static final int SEED_BATCH_SIZE = 1000;
+
+	// The number of songs in the catalogue
+	@Param({ "10000" })
+	public int songs;
+
+	// The number of songs looked up by each call to getSongTitlesByIds
+	@Param({ "20" })
+	public int titlesPerLookup;
+
+	private MongoClient mongoClient;
+
+	private SongDalImpl songDal;
+
+	// The ObjectIDs of the songs in the catalogue
+	private final List<String> songIds = new ArrayList<String>();
+
+	@Setup
+	public void setUp() {
+		ServerAddress address = new ServerAddress(System.getProperty("benchmark.mongoHost", "localhost"),
+				Integer.getInteger("benchmark.mongoPort", 27017));
+		mongoClient = new MongoClient(address, MongoClientOptions.builder().serverSelectionTimeout(5000).build());
+
+		MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+		mongoTemplate.getDb().drop();
+		songDal = new SongDalImpl(mongoTemplate, new SimpleMeterRegistry(), 86400, 100);
+
+		for (int i = 0; i < songs; i += SEED_BATCH_SIZE) {
+			List<Song> batch = new ArrayList<Song>();
+
+			for (int j = i; j < Math.min(i + SEED_BATCH_SIZE, songs); j++) {
+				batch.add(new Song("Song " + j, "Artist " + (j % 500), "Album " + (j % 2000)));
+			}
+			songDal.addSongs(batch);
+
+			for (Song song : batch) {
+				songIds.add(song.getId());
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		mongoClient.getDatabase(DATABASE).drop();
+		mongoClient.close();
+	}
+
+	@Benchmark
+	public DbQueryStatus findSongById() {
+		return songDal.findSongById(randomSongId());
+	}
+
+	@Benchmark
+	public DbQueryStatus getSongTitleById() {
+		return songDal.getSongTitleById(randomSongId());
+	}
+
+	@Benchmark
+	public DbQueryStatus getSongTitlesByIds() {
+		List<String> lookup = new ArrayList<String>(titlesPerLookup);
+
+		for (int i = 0; i < titlesPerLookup; i++) {
+			lookup.add(randomSongId());
+		}
+
+		return songDal.getSongTitlesByIds(lookup);
+	}
+
+	@Benchmark
+	public DbQueryStatus updateSongFavouritesCounts() {
+		return songDal.updateSongFavouritesCounts(null, Collections.singletonMap(randomSongId(), 1L), true);
+	}
+
+	private String randomSongId() {
+		return songIds.get(ThreadLocalRandom.current().nextInt(songIds.size()));
+	}
+}
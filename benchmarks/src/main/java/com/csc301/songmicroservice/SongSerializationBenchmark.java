@@ -0,0 +1,85 @@
+package com.csc301.songmicroservice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures building the JSON representation of a song, and serializing the bodies of /getSongById and
+ * /getSongTitleById both as the map built by Utils.setResponseStatus and as a RouteResponse, with an ObjectMapper
+ * configured the same way as Spring's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SongSerializationBenchmark {
+
+	private static final String SONG_PATH = "GET http://localhost:3001/getSongById/5d61728193528481fe5a3122";
+	private static final String TITLE_PATH = "GET http://localhost:3001/getSongTitleById/5d61728193528481fe5a3122";
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private Song song;
+
+	// The representation of the song as CachingSongDal serves it, built once
+	private Map<String, String> songRepresentation;
+
+	@Setup
+	public void setUp() {
+		song = new Song("Never Gonna Give You Up", "Rick Astley", "Whenever You Need Somebody");
+		song.setId(new ObjectId("5d61728193528481fe5a3122"));
+		song.setSongAmountFavourites(1987);
+		songRepresentation = song.getJsonRepresentation();
+	}
+
+	@Benchmark
+	public Map<String, String> songJsonRepresentation() {
+		return song.getJsonRepresentation();
+	}
+
+	@Benchmark
+	public byte[] getSongByIdMapResponse() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(mapResponse(SONG_PATH, songRepresentation));
+	}
+
+	@Benchmark
+	public byte[] getSongByIdRouteResponse() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(new RouteResponse(SONG_PATH, DbQueryExecResult.QUERY_OK, songRepresentation));
+	}
+
+	@Benchmark
+	public byte[] getSongTitleByIdMapResponse() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(mapResponse(TITLE_PATH, song.getSongName()));
+	}
+
+	@Benchmark
+	public byte[] getSongTitleByIdRouteResponse() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(new RouteResponse(TITLE_PATH, DbQueryExecResult.QUERY_OK, song.getSongName()));
+	}
+
+	private static Map<String, Object> mapResponse(String path, Object data) {
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", path);
+
+		return Utils.setResponseStatus(response, DbQueryExecResult.QUERY_OK, data);
+	}
+}
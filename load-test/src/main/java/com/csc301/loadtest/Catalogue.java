@@ -0,0 +1,113 @@
+package com.csc301.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The synthetic songs and users the load test runs against. Songs and followed users are drawn with a Zipf
+ * distribution, so a few of them get most of the likes and follows. Which songs and users are the popular ones is
+ * shuffled with the random seed, rather than being the first ones seeded.
+ */
+public class Catalogue {
+
+	private static final String USER_NAME_PREFIX = "loadtest-user-";
+
+	// The ObjectIDs of the songs, in the order they were seeded
+	private final List<String> songIds;
+
+	private final int users;
+
+	private final ZipfDistribution songPopularity;
+	private final ZipfDistribution userPopularity;
+
+	// The index of the song and user at each rank of popularity
+	private final int[] songsByPopularity;
+	private final int[] usersByPopularity;
+
+	public Catalogue(List<String> songIds, int users, double zipfExponent, long randomSeed) {
+		this.songIds = songIds;
+		this.users = users;
+		this.songPopularity = new ZipfDistribution(songIds.size(), zipfExponent);
+		this.userPopularity = new ZipfDistribution(users, zipfExponent);
+
+		Random random = new Random(randomSeed);
+		this.songsByPopularity = shuffledIndexes(songIds.size(), random);
+		this.usersByPopularity = shuffledIndexes(users, random);
+	}
+
+	/**
+	 * Reads the songIds written by save
+	 *
+	 * @param file the file the songIds were written to
+	 * @return the songIds, in the order they were seeded
+	 * @throws IOException if the file can't be read
+	 */
+	public static List<String> loadSongIds(Path file) throws IOException {
+		return Files.readAllLines(file, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the songIds to the given file, one per line, so that later runs can skip seeding
+	 *
+	 * @param file the file to write the songIds to
+	 * @throws IOException if the file can't be written
+	 */
+	public void save(Path file) throws IOException {
+		Files.write(file, songIds, StandardCharsets.UTF_8);
+	}
+
+	public static String userName(int user) {
+		return USER_NAME_PREFIX + user;
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	public List<String> getSongIds() {
+		return songIds;
+	}
+
+	/**
+	 * @return a user drawn uniformly, as the user making a request
+	 */
+	public int anyUser(Random random) {
+		return random.nextInt(users);
+	}
+
+	/**
+	 * @return a user drawn by popularity, as the user being followed
+	 */
+	public int popularUser(Random random) {
+		return usersByPopularity[userPopularity.sample(random)];
+	}
+
+	/**
+	 * @return the songId of a song drawn by popularity
+	 */
+	public String popularSong(Random random) {
+		return songIds.get(songsByPopularity[songPopularity.sample(random)]);
+	}
+
+	private static int[] shuffledIndexes(int size, Random random) {
+		List<Integer> indexes = new ArrayList<Integer>(size);
+
+		for (int i = 0; i < size; i++) {
+			indexes.add(i);
+		}
+		Collections.shuffle(indexes, random);
+
+		int[] shuffled = new int[size];
+		for (int i = 0; i < size; i++) {
+			shuffled[i] = indexes.get(i);
+		}
+
+		return shuffled;
+	}
+}
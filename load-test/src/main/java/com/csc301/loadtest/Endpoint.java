@@ -0,0 +1,92 @@
+package com.csc301.loadtest;
+
+import java.util.Random;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * The routes the load test sends traffic to, each building its requests from users and songs drawn from the Catalogue
+ */
+public enum Endpoint {
+
+	LIKE_SONG("likeSong") {
+		@Override
+		Request request(LoadTestConfig config, Catalogue catalogue, Random random) {
+			return put(config.getString("profileServiceUrl") + "/likeSong/"
+					+ Catalogue.userName(catalogue.anyUser(random)) + "/" + catalogue.popularSong(random));
+		}
+	},
+
+	UNLIKE_SONG("unlikeSong") {
+		@Override
+		Request request(LoadTestConfig config, Catalogue catalogue, Random random) {
+			return put(config.getString("profileServiceUrl") + "/unlikeSong/"
+					+ Catalogue.userName(catalogue.anyUser(random)) + "/" + catalogue.popularSong(random));
+		}
+	},
+
+	FOLLOW_FRIEND("followFriend") {
+		@Override
+		Request request(LoadTestConfig config, Catalogue catalogue, Random random) {
+			return put(config.getString("profileServiceUrl") + "/followFriend/"
+					+ Catalogue.userName(catalogue.anyUser(random)) + "/"
+					+ Catalogue.userName(catalogue.popularUser(random)));
+		}
+	},
+
+	GET_ALL_FRIEND_FAVOURITE_SONG_TITLES("getAllFriendFavouriteSongTitles") {
+		@Override
+		Request request(LoadTestConfig config, Catalogue catalogue, Random random) {
+			return new Request.Builder().url(config.getString("profileServiceUrl")
+					+ "/getAllFriendFavouriteSongTitles/" + Catalogue.userName(catalogue.anyUser(random))).build();
+		}
+	},
+
+	GET_SONG_BY_ID("getSongById") {
+		@Override
+		Request request(LoadTestConfig config, Catalogue catalogue, Random random) {
+			return new Request.Builder()
+					.url(config.getString("songServiceUrl") + "/getSongById/" + catalogue.popularSong(random)).build();
+		}
+	};
+
+	// The name of the route, as used in the mix
+	private final String route;
+
+	Endpoint(String route) {
+		this.route = route;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @param route the name of the route, as used in the mix
+	 * @return the endpoint of the route
+	 * @throws IllegalArgumentException if there is no endpoint for the route
+	 */
+	public static Endpoint forRoute(String route) {
+		for (Endpoint endpoint : values()) {
+			if (endpoint.route.equals(route)) {
+				return endpoint;
+			}
+		}
+		throw new IllegalArgumentException("No endpoint for the route " + route);
+	}
+
+	/**
+	 * Builds the next request to the route
+	 *
+	 * @param config the settings of the load test
+	 * @param catalogue the songs and users to draw from
+	 * @param random the source of randomness
+	 * @return the request
+	 */
+	abstract Request request(LoadTestConfig config, Catalogue catalogue, Random random);
+
+	private static Request put(String url) {
+		return new Request.Builder().url(url).put(RequestBody.create(new byte[0], null)).build();
+	}
+}
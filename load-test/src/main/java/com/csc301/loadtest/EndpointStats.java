@@ -0,0 +1,69 @@
+package com.csc301.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The latencies and outcomes of the requests to one endpoint. Latencies are recorded in microseconds from when each
+ * request was meant to start, and recording never blocks, as it happens on OkHttp's threads while requests complete.
+ * The latencies of requests answered with an OK status are kept apart from those of the rest, so that quickly rejected
+ * requests don't make the endpoint look faster than it is.
+ */
+public class EndpointStats {
+
+	// The latencies of the requests answered with an OK status, and of the rest
+	private final Recorder okLatencies = new Recorder(3);
+	private final Recorder errorLatencies = new Recorder(3);
+
+	// Keeps track of the requests answered with an OK status, with another status, and not answered at all
+	private final LongAdder ok = new LongAdder();
+	private final LongAdder notOk = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * @param latencyNanos the time from when the request was meant to start to when its response was read
+	 * @param isOk whether the response had an OK status
+	 */
+	public void recordResponse(long latencyNanos, boolean isOk) {
+		(isOk ? okLatencies : errorLatencies).recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		(isOk ? ok : notOk).increment();
+	}
+
+	/**
+	 * @param latencyNanos the time from when the request was meant to start to when it failed
+	 */
+	public void recordFailure(long latencyNanos) {
+		errorLatencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		failed.increment();
+	}
+
+	/**
+	 * @return the latencies of the requests answered with an OK status since this was last called, in microseconds
+	 */
+	public Histogram takeOkLatencies() {
+		return okLatencies.getIntervalHistogram();
+	}
+
+	/**
+	 * @return the latencies of the requests answered with another status or not answered at all since this was last
+	 * called, in microseconds
+	 */
+	public Histogram takeErrorLatencies() {
+		return errorLatencies.getIntervalHistogram();
+	}
+
+	public long getOk() {
+		return ok.sum();
+	}
+
+	public long getNotOk() {
+		return notOk.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+}
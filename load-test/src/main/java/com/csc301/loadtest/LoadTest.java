@@ -0,0 +1,141 @@
+package com.csc301.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs a load test end to end: starts whatever of the local stack the config points at, seeds the services (or reuses
+ * an earlier seeding), drives the endpoint mix at a fixed rate, and reports each endpoint's latency percentiles and the
+ * services' memory and threads.
+ *
+ * <pre>
+ * java -jar load-test/target/load-test.jar rate=1000 durationSeconds=120 histogramDirectory=target/histograms
+ * </pre>
+ *
+ * To compare serving requests on virtual threads with Tomcat's pool at up to 10000 connections, run the launched
+ * services on Java 21 at a rate above what they can serve, once as they are and once with virtual threads:
+ *
+ * <pre>
+ * java -jar load-test/target/load-test.jar songServiceJar=... profileServiceJar=... serviceJava=/jdk-21/bin/java
+ *     rate=20000 maxInFlight=10000 songServiceArgs=--virtualThreads.enabled=true
+ *     profileServiceArgs=--virtualThreads.enabled=true
+ * </pre>
+ *
+ * See LoadTestConfig for every setting.
+ */
+public class LoadTest {
+
+	// Latencies are recorded in microseconds, and reported in milliseconds
+	private static final double MICROS_PER_MILLI = 1000.0;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		LoadTestConfig config = LoadTestConfig.fromArgs(args);
+
+		int maxInFlight = config.getInt("maxInFlight");
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(maxInFlight);
+		dispatcher.setMaxRequestsPerHost(maxInFlight);
+
+		OkHttpClient client = new OkHttpClient.Builder().dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(maxInFlight, 5, TimeUnit.MINUTES))
+				.callTimeout(30, TimeUnit.SECONDS).readTimeout(30, TimeUnit.SECONDS).build();
+
+		try (LocalStack stack = LocalStack.start(config)) {
+			Catalogue catalogue = loadOrSeed(client, config);
+
+			System.out.printf("Running at %s requests/s (%s arrivals) for %ss after %ss of warmup%n",
+					config.getString("rate"), config.getString("arrivals"), config.getString("durationSeconds"),
+					config.getString("warmupSeconds"));
+			MemorySampler memory = new MemorySampler(client, config, stack);
+			Map<Endpoint, EndpointStats> stats;
+
+			try {
+				stats = new OpenLoopDriver(client, config, catalogue).run();
+			} finally {
+				memory.close();
+			}
+
+			report(config, stats);
+			memory.report();
+		} finally {
+			dispatcher.executorService().shutdown();
+			client.connectionPool().evictAll();
+		}
+	}
+
+	private static Catalogue loadOrSeed(OkHttpClient client, LoadTestConfig config)
+			throws IOException, InterruptedException {
+		Path catalogueFile = Paths.get(config.getString("catalogueFile"));
+
+		if (config.getBoolean("skipSeeding")) {
+			return new Catalogue(Catalogue.loadSongIds(catalogueFile), config.getInt("users"),
+					config.getDouble("zipfExponent"), config.getInt("randomSeed"));
+		}
+
+		Catalogue catalogue = new Seeder(client, config).seed();
+		catalogue.save(catalogueFile);
+
+		return catalogue;
+	}
+
+	/**
+	 * Prints a table of each endpoint's throughput, outcomes and latency percentiles, and writes each endpoint's full
+	 * latency distributions to the histogramDirectory, if one is given. The offered rate counts every request that was
+	 * scheduled, while the OK rate and the percentiles only count the requests answered with an OK status, the
+	 * latencies of the rest being reported by their p99 alone.
+	 */
+	private static void report(LoadTestConfig config, Map<Endpoint, EndpointStats> stats) throws IOException {
+		double durationSeconds = config.getDouble("durationSeconds");
+		String histogramDirectory = config.getString("histogramDirectory");
+
+		if (!histogramDirectory.isEmpty()) {
+			Files.createDirectories(Paths.get(histogramDirectory));
+		}
+
+		System.out.printf("%n%-32s %9s %9s %9s %7s %7s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s",
+				"ok/s", "notOk", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "err p99");
+
+		for (Map.Entry<Endpoint, EndpointStats> endpointStats : stats.entrySet()) {
+			EndpointStats endpoint = endpointStats.getValue();
+			Histogram okLatencies = endpoint.takeOkLatencies();
+			Histogram errorLatencies = endpoint.takeErrorLatencies();
+			long requests = okLatencies.getTotalCount() + errorLatencies.getTotalCount();
+
+			System.out.printf("%-32s %9d %9.1f %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+					endpointStats.getKey().getRoute(), requests, requests / durationSeconds,
+					okLatencies.getTotalCount() / durationSeconds, endpoint.getNotOk(), endpoint.getFailed(),
+					okLatencies.getValueAtPercentile(50) / MICROS_PER_MILLI,
+					okLatencies.getValueAtPercentile(90) / MICROS_PER_MILLI,
+					okLatencies.getValueAtPercentile(99) / MICROS_PER_MILLI,
+					okLatencies.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+					okLatencies.getMaxValue() / MICROS_PER_MILLI,
+					errorLatencies.getValueAtPercentile(99) / MICROS_PER_MILLI);
+
+			if (!histogramDirectory.isEmpty()) {
+				writeHistogram(histogramDirectory, endpointStats.getKey().getRoute() + ".hgrm", okLatencies);
+				writeHistogram(histogramDirectory, endpointStats.getKey().getRoute() + "-errors.hgrm", errorLatencies);
+			}
+		}
+	}
+
+	private static void writeHistogram(String histogramDirectory, String fileName, Histogram latencies)
+			throws IOException {
+		Path file = Paths.get(histogramDirectory, fileName);
+
+		try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()))) {
+			latencies.outputPercentileDistribution(out, MICROS_PER_MILLI);
+		}
+	}
+}
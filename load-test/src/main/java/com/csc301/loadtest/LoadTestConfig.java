@@ -0,0 +1,125 @@
+package com.csc301.loadtest;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The settings of a load test, given on the command line as key=value arguments. Any key left out takes its default.
+ *
+ * <pre>
+ * songServiceUrl, profileServiceUrl   where the services are (http://localhost:3001, http://localhost:3002)
+ * songs, users                        the size of the seeded catalogue and social graph (10000, 2000)
+ * followsPerUser, likesPerUser        the follows and likes seeded per user (20, 30)
+ * zipfExponent                        the skew of song and followee popularity, 0 for uniform (1.0)
+ * randomSeed                          the seed of every random choice, so runs are repeatable (42)
+ * seedConcurrency                     the requests in flight while seeding (64)
+ * skipSeeding                         reuse the graph of an earlier run with the same settings (false)
+ * catalogueFile                       where the songIds of the seeded songs are kept for later runs (load-test-catalogue.txt)
+ * rate                                the requests started per second, whether or not earlier ones completed (500)
+ * arrivals                            poisson or uniform gaps between requests (poisson)
+ * warmupSeconds, durationSeconds      how long to run before and while measuring (10, 60)
+ * maxInFlight                         the requests (and connections) in flight at once, after which they queue, which
+ *                                     needs the open files limit (ulimit -n) to be above it (10000)
+ * mix                                 the weight of each endpoint in the traffic
+ *                                     (likeSong:30,unlikeSong:10,followFriend:10,getAllFriendFavouriteSongTitles:20,getSongById:30)
+ * histogramDirectory                  where to write each endpoint's full latency distribution, if anywhere
+ * memorySampleMillis                  how often the services' memory and threads are sampled while measuring (1000)
+ * mongodPath, neo4jHome               launch mongod and Neo4j locally instead of using running ones
+ * songServiceJar, profileServiceJar   launch the services from their executable jars instead of using running ones
+ * songServiceArgs, profileServiceArgs further arguments of the launched services, separated by whitespace
+ *                                     (e.g. "--virtualThreads.enabled=true --spring.profiles.active=reactive")
+ * serviceJava                         the java executable to launch the services with, such as a Java 21 one for
+ *                                     --virtualThreads.enabled=true (the one running the load test)
+ * </pre>
+ */
+public class LoadTestConfig {
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<String, String>();
+
+	static {
+		DEFAULTS.put("songServiceUrl", "http://localhost:3001");
+		DEFAULTS.put("profileServiceUrl", "http://localhost:3002");
+		DEFAULTS.put("songs", "10000");
+		DEFAULTS.put("users", "2000");
+		DEFAULTS.put("followsPerUser", "20");
+		DEFAULTS.put("likesPerUser", "30");
+		DEFAULTS.put("zipfExponent", "1.0");
+		DEFAULTS.put("randomSeed", "42");
+		DEFAULTS.put("seedConcurrency", "64");
+		DEFAULTS.put("skipSeeding", "false");
+		DEFAULTS.put("catalogueFile", "load-test-catalogue.txt");
+		DEFAULTS.put("rate", "500");
+		DEFAULTS.put("arrivals", "poisson");
+		DEFAULTS.put("warmupSeconds", "10");
+		DEFAULTS.put("durationSeconds", "60");
+		DEFAULTS.put("maxInFlight", "10000");
+		DEFAULTS.put("mix", "likeSong:30,unlikeSong:10,followFriend:10,getAllFriendFavouriteSongTitles:20,getSongById:30");
+		DEFAULTS.put("histogramDirectory", "");
+		DEFAULTS.put("memorySampleMillis", "1000");
+		DEFAULTS.put("mongodPath", "");
+		DEFAULTS.put("neo4jHome", "");
+		DEFAULTS.put("songServiceJar", "");
+		DEFAULTS.put("profileServiceJar", "");
+		DEFAULTS.put("songServiceArgs", "");
+		DEFAULTS.put("profileServiceArgs", "");
+		DEFAULTS.put("serviceJava", "");
+	}
+
+	private final Map<String, String> settings;
+
+	private LoadTestConfig(Map<String, String> settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * @param args the key=value arguments given on the command line
+	 * @return the settings, with the defaults of any keys left out
+	 * @throws IllegalArgumentException if an argument is not a key=value pair of a known key
+	 */
+	public static LoadTestConfig fromArgs(String[] args) {
+		Map<String, String> settings = new HashMap<String, String>(DEFAULTS);
+
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+
+			if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+				throw new IllegalArgumentException("Expected key=value with one of the keys " + DEFAULTS.keySet()
+						+ ", but got " + arg);
+			}
+			settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+
+		return new LoadTestConfig(settings);
+	}
+
+	public String getString(String key) {
+		return settings.get(key);
+	}
+
+	public int getInt(String key) {
+		return Integer.parseInt(settings.get(key));
+	}
+
+	public double getDouble(String key) {
+		return Double.parseDouble(settings.get(key));
+	}
+
+	public boolean getBoolean(String key) {
+		return Boolean.parseBoolean(settings.get(key));
+	}
+
+	/**
+	 * @return the weight of each endpoint in the traffic, with the endpoints' names as keys
+	 */
+	public Map<String, Integer> getMix() {
+		Map<String, Integer> mix = new LinkedHashMap<String, Integer>();
+
+		for (String entry : settings.get("mix").split(",")) {
+			String[] endpointWeight = entry.trim().split(":");
+			mix.put(endpointWeight[0], Integer.parseInt(endpointWeight[1]));
+		}
+
+		return mix;
+	}
+}
@@ -0,0 +1,192 @@
+package com.csc301.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches whichever of mongod, Neo4j and the two services the config points at, so that a load test can run against a
+ * local stack with one command. Anything the config leaves out is expected to be running already. The processes are
+ * stopped, in the reverse order they were started, when this is closed.
+ */
+public class LocalStack implements AutoCloseable {
+
+	private static final int MONGOD_PORT = 27017;
+	private static final int NEO4J_BOLT_PORT = 7687;
+
+	// The password the Profile Microservice connects to Neo4j with by default
+	private static final String NEO4J_PASSWORD = "1234";
+
+	// How long to wait for each process to start listening on its port
+	private static final long STARTUP_TIMEOUT_SECONDS = 120;
+
+	private final List<Process> processes = new ArrayList<Process>();
+
+	// The process ids of the launched services, with their URLs as keys
+	private final Map<String, Long> servicePids = new HashMap<String, Long>();
+
+	/**
+	 * Starts the processes the config points at and waits for each to listen on its port before starting the next
+	 *
+	 * @param config the settings of the load test
+	 * @return the started stack
+	 * @throws IOException if a process could not be started, or did not listen on its port in time
+	 * @throws InterruptedException if interrupted while waiting for a process to start
+	 */
+	public static LocalStack start(LoadTestConfig config) throws IOException, InterruptedException {
+		LocalStack stack = new LocalStack();
+
+		try {
+			if (!config.getString("mongodPath").isEmpty()) {
+				Path dbPath = Files.createTempDirectory("load-test-mongod");
+				stack.launch("mongod", MONGOD_PORT, config.getString("mongodPath"), "--dbpath", dbPath.toString(),
+						"--port", String.valueOf(MONGOD_PORT), "--bind_ip", "127.0.0.1");
+			}
+
+			if (!config.getString("neo4jHome").isEmpty()) {
+				File bin = new File(config.getString("neo4jHome"), "bin");
+
+				// Only takes effect on a fresh database, and fails harmlessly on one that already has a password
+				run(new File(bin, "neo4j-admin").getPath(), "set-initial-password", NEO4J_PASSWORD);
+				stack.launch("Neo4j", NEO4J_BOLT_PORT, new File(bin, "neo4j").getPath(), "console");
+			}
+
+			// Each service is pointed at the other wherever it is, so that neither has to run on its default port
+			if (!config.getString("songServiceJar").isEmpty()) {
+				stack.launchService("Song Microservice", config.getString("serviceJava"),
+						config.getString("songServiceJar"), config.getString("songServiceUrl"),
+						"--profileService.url=" + config.getString("profileServiceUrl"),
+						config.getString("songServiceArgs"));
+			}
+
+			if (!config.getString("profileServiceJar").isEmpty()) {
+				stack.launchService("Profile Microservice", config.getString("serviceJava"),
+						config.getString("profileServiceJar"), config.getString("profileServiceUrl"),
+						"--songService.url=" + config.getString("songServiceUrl"),
+						config.getString("profileServiceArgs"));
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			stack.close();
+			throw e;
+		}
+
+		return stack;
+	}
+
+	/**
+	 * Launches a service from its executable jar on the port of its URL
+	 *
+	 * @param name the name of the service
+	 * @param java the java executable to run the service with, or empty for the one running the load test
+	 * @param jar the path of the service's executable jar
+	 * @param url the URL the service is reached at
+	 * @param otherServiceUrl the argument giving the service the URL of the other service
+	 * @param args any further arguments, separated by whitespace, such as --asyncMode.enabled=true or
+	 * --spring.profiles.active=reactive, which come last so that they take precedence
+	 */
+	private void launchService(String name, String java, String jar, String url, String otherServiceUrl, String args)
+			throws IOException, InterruptedException {
+		int port = URI.create(url).getPort();
+
+		String javaPath = java.isEmpty() ? new File(System.getProperty("java.home"), "bin/java").getPath() : java;
+
+		List<String> command = new ArrayList<String>(
+				Arrays.asList(javaPath, "-jar", jar, "--server.port=" + port, otherServiceUrl));
+
+		if (!args.trim().isEmpty()) {
+			command.addAll(Arrays.asList(args.trim().split("\\s+")));
+		}
+
+		Long pid = pid(launch(name, port, command.toArray(new String[0])));
+
+		if (pid != null) {
+			servicePids.put(url, pid);
+		}
+	}
+
+	/**
+	 * @param url the URL of a service
+	 * @return the process id of the service, or null if it was not launched by this or the process id is not known
+	 */
+	public Long getServicePid(String url) {
+		return servicePids.get(url);
+	}
+
+	private Process launch(String name, int port, String... command) throws IOException, InterruptedException {
+		System.out.printf("Starting %s: %s%n", name, String.join(" ", command));
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(new File(System.getProperty("java.io.tmpdir"), "load-test-" + port + ".log"))
+				.start();
+		processes.add(process);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STARTUP_TIMEOUT_SECONDS);
+		while (!isListening(port)) {
+			if (!process.isAlive()) {
+				throw new IOException(name + " exited with " + process.exitValue() + " before listening on " + port);
+			}
+			if (System.nanoTime() > deadline) {
+				throw new IOException(name + " did not listen on " + port + " within " + STARTUP_TIMEOUT_SECONDS + "s");
+			}
+			Thread.sleep(250);
+		}
+
+		return process;
+	}
+
+	/**
+	 * Finds the process id of the given process, which Process only gives on Java 9 or later
+	 *
+	 * @param process the process
+	 * @return the process id, or null on older versions of Java
+	 */
+	private static Long pid(Process process) {
+		try {
+			return (Long) Process.class.getMethod("pid").invoke(process);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static void run(String... command) throws IOException, InterruptedException {
+		new ProcessBuilder(command).inheritIO().start().waitFor(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private static boolean isListening(int port) {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("localhost", port), 250);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		for (int i = processes.size() - 1; i >= 0; i--) {
+			Process process = processes.get(i);
+			process.destroy();
+
+			try {
+				if (!process.waitFor(30, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+		processes.clear();
+		servicePids.clear();
+	}
+}
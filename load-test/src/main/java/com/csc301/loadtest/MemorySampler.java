@@ -0,0 +1,197 @@
+package com.csc301.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Samples the memory and threads of both services every memorySampleMillis while the load test is measuring, so that
+ * runs with different settings of the services (such as --virtualThreads.enabled=true) can be compared by what they
+ * cost as well as by their throughput. The resident set size, which includes the stacks of platform threads outside
+ * the heap, and the number of platform threads are read from /proc for the services the LocalStack launched, on Linux.
+ * The heap used, which includes the stacks of virtual threads, is read from each service's /meters, which a service
+ * too busy to accept another connection leaves out.
+ */
+public class MemorySampler implements AutoCloseable {
+
+	private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+	/**
+	 * The samples taken from one service
+	 */
+	private static class ServiceSamples {
+		private final String name;
+		private final String url;
+
+		// The status file of the service's process, or null if the service was not launched or this is not Linux
+		private final File procStatus;
+
+		private int heapSamples;
+		private double heapSum;
+		private double heapMax;
+
+		private int processSamples;
+		private double rssSum;
+		private double rssMax;
+		private double threadsMax;
+
+		private ServiceSamples(String name, String url, Long pid) {
+			this.name = name;
+			this.url = url;
+
+			File status = pid == null ? null : new File("/proc/" + pid + "/status");
+			this.procStatus = status != null && status.canRead() ? status : null;
+		}
+	}
+
+	private final OkHttpClient client;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final List<ServiceSamples> services = new ArrayList<ServiceSamples>();
+
+	// When the load test stops measuring, as given by System.nanoTime, after which no more samples are taken
+	private final long measureEnd;
+
+	private final ScheduledExecutorService sampleExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * Starts sampling once the warmup is over
+	 *
+	 * @param client the client to read the services' meters with
+	 * @param config the settings of the load test
+	 * @param stack the local stack, which knows the processes of the services it launched
+	 */
+	public MemorySampler(OkHttpClient client, LoadTestConfig config, LocalStack stack) {
+		long sampleMillis = config.getInt("memorySampleMillis");
+
+		// A sample that takes longer than the gap between samples is given up, rather than delaying the next one
+		this.client = client.newBuilder().callTimeout(sampleMillis, TimeUnit.MILLISECONDS).build();
+
+		for (String[] service : new String[][] { { "Song Microservice", config.getString("songServiceUrl") },
+				{ "Profile Microservice", config.getString("profileServiceUrl") } }) {
+			services.add(new ServiceSamples(service[0], service[1], stack.getServicePid(service[1])));
+		}
+
+		long warmupMillis = TimeUnit.SECONDS.toMillis(config.getInt("warmupSeconds"));
+		this.measureEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis)
+				+ TimeUnit.SECONDS.toNanos(config.getInt("durationSeconds"));
+
+		sampleExecutor.scheduleAtFixedRate(this::sample, warmupMillis, sampleMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void sample() {
+		if (System.nanoTime() > measureEnd) {
+			return;
+		}
+
+		// The processes are sampled first, so that waiting on a busy service's meters doesn't delay them
+		for (ServiceSamples service : services) {
+			Double rssKilobytes = procStatus(service.procStatus, "VmRSS:");
+			Double threads = procStatus(service.procStatus, "Threads:");
+
+			if (rssKilobytes != null && threads != null) {
+				service.processSamples++;
+				service.rssSum += rssKilobytes * 1024;
+				service.rssMax = Math.max(service.rssMax, rssKilobytes * 1024);
+				service.threadsMax = Math.max(service.threadsMax, threads);
+			}
+		}
+
+		for (ServiceSamples service : services) {
+			Double heap = meter(service.url, "jvm.memory.used?tag=area:heap");
+
+			if (heap != null) {
+				service.heapSamples++;
+				service.heapSum += heap;
+				service.heapMax = Math.max(service.heapMax, heap);
+			}
+		}
+	}
+
+	/**
+	 * @param url the URL of the service
+	 * @param meter the name of the meter, and the tags to select
+	 * @return the value of the meter, or null if the service did not answer with it in time
+	 */
+	private Double meter(String url, String meter) {
+		Request request = new Request.Builder().url(url + "/meters/" + meter).build();
+
+		try (Response response = client.newCall(request).execute()) {
+			if (!response.isSuccessful()) {
+				return null;
+			}
+
+			JsonNode measurements = mapper.readTree(response.body().byteStream()).path("measurements");
+
+			return measurements.size() > 0 ? measurements.get(0).path("value").asDouble() : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param procStatus the status file of the process
+	 * @param field the name of the field, such as "VmRSS:" (given in kilobytes) or "Threads:"
+	 * @return the value of the field, or null if it can't be read
+	 */
+	private static Double procStatus(File procStatus, String field) {
+		if (procStatus == null) {
+			return null;
+		}
+
+		try {
+			for (String line : Files.readAllLines(procStatus.toPath(), StandardCharsets.UTF_8)) {
+				if (line.startsWith(field)) {
+					return Double.parseDouble(line.substring(field.length()).replace("kB", "").trim());
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			return null;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stops sampling, and waits for a sample being taken to finish
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		sampleExecutor.shutdownNow();
+		sampleExecutor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Prints a table of each service's mean and peak resident set size, peak platform threads, and mean and peak heap
+	 * used while measuring, with the number of samples each is taken from
+	 */
+	public void report() {
+		System.out.printf("%n%-32s %7s %9s %9s %9s %7s %9s %9s%n", "service", "samples", "RSS MB", "max MB",
+				"threads", "samples", "heap MB", "max MB");
+
+		for (ServiceSamples service : services) {
+			System.out.printf("%-32s %7d %9.1f %9.1f %9.0f %7d %9.1f %9.1f%n", service.name, service.processSamples,
+					mean(service.rssSum, service.processSamples), service.rssMax / BYTES_PER_MEGABYTE,
+					service.threadsMax, service.heapSamples, mean(service.heapSum, service.heapSamples),
+					service.heapMax / BYTES_PER_MEGABYTE);
+		}
+	}
+
+	private static double mean(double sum, int samples) {
+		return samples == 0 ? 0 : sum / samples / BYTES_PER_MEGABYTE;
+	}
+}
@@ -0,0 +1,148 @@
+package com.csc301.loadtest;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Sends requests at a fixed average rate, whether or not the earlier ones have completed, as independent users would.
+ * Each request's latency is measured from when it was scheduled to start rather than from when it was sent, so time
+ * spent queued behind slow requests, in the client or in the services, is part of the latency instead of hidden by a
+ * lower request rate (coordinated omission).
+ */
+public class OpenLoopDriver {
+
+	// How long to wait for the requests still in flight once the last one has been sent
+	private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+	private final OkHttpClient client;
+
+	private final LoadTestConfig config;
+
+	private final Catalogue catalogue;
+
+	// The endpoints of the mix, and the running total of their weights, to draw the endpoint of each request by weight
+	private final Endpoint[] endpoints;
+	private final int[] cumulativeWeights;
+
+	private final Map<Endpoint, EndpointStats> stats = new EnumMap<Endpoint, EndpointStats>(Endpoint.class);
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	public OpenLoopDriver(OkHttpClient client, LoadTestConfig config, Catalogue catalogue) {
+		this.client = client;
+		this.config = config;
+		this.catalogue = catalogue;
+
+		Map<String, Integer> mix = config.getMix();
+		this.endpoints = new Endpoint[mix.size()];
+		this.cumulativeWeights = new int[mix.size()];
+
+		int i = 0;
+		int total = 0;
+		for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+			total += weight.getValue();
+			endpoints[i] = Endpoint.forRoute(weight.getKey());
+			cumulativeWeights[i] = total;
+			stats.put(endpoints[i], new EndpointStats());
+			i++;
+		}
+	}
+
+	/**
+	 * Sends the traffic for warmupSeconds, then for durationSeconds while measuring, and waits for the requests still
+	 * in flight
+	 *
+	 * @return the stats of each endpoint of the mix, covering the requests scheduled while measuring
+	 * @throws InterruptedException if interrupted while waiting for requests to complete
+	 */
+	public Map<Endpoint, EndpointStats> run() throws InterruptedException {
+		Random random = new Random(config.getInt("randomSeed"));
+		boolean poisson = config.getString("arrivals").equals("poisson");
+		double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / config.getDouble("rate");
+
+		long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getInt("warmupSeconds"));
+		long end = measureStart + TimeUnit.SECONDS.toNanos(config.getInt("durationSeconds"));
+		long next = System.nanoTime();
+
+		while (next < end) {
+			next += (long) (poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos);
+
+			long wait;
+			while ((wait = next - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			send(nextEndpoint(random), next, next >= measureStart, random);
+		}
+
+		long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+		while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+			Thread.sleep(10);
+		}
+
+		return stats;
+	}
+
+	private Endpoint nextEndpoint(Random random) {
+		int target = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		int i = 0;
+
+		while (cumulativeWeights[i] <= target) {
+			i++;
+		}
+
+		return endpoints[i];
+	}
+
+	/**
+	 * Sends a request to the endpoint without waiting for it
+	 *
+	 * @param endpoint the endpoint to send the request to
+	 * @param scheduledStart when the request was meant to start, as given by System.nanoTime
+	 * @param measured whether the request was scheduled while measuring, rather than warming up
+	 * @param random the source of randomness
+	 */
+	private void send(Endpoint endpoint, long scheduledStart, boolean measured, Random random) {
+		EndpointStats endpointStats = stats.get(endpoint);
+		inFlight.incrementAndGet();
+
+		client.newCall(endpoint.request(config, catalogue, random)).enqueue(new Callback() {
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				if (measured) {
+					endpointStats.recordFailure(System.nanoTime() - scheduledStart);
+				}
+				inFlight.decrementAndGet();
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				try (Response closedResponse = response) {
+					String body = closedResponse.body().string();
+
+					if (measured) {
+						endpointStats.recordResponse(System.nanoTime() - scheduledStart,
+								body.contains("\"status\":\"OK\""));
+					}
+				} catch (IOException e) {
+					if (measured) {
+						endpointStats.recordFailure(System.nanoTime() - scheduledStart);
+					}
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			}
+		});
+	}
+}
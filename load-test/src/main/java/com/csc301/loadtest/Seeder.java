@@ -0,0 +1,208 @@
+package com.csc301.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Seeds the services with a synthetic catalogue and social graph through their routes: the songs, then the users, then
+ * each user's follows and likes, drawn by popularity from the Catalogue. At most seedConcurrency requests are in flight
+ * at once.
+ */
+public class Seeder {
+
+	private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+	// The number of songIds sent to the Profile Microservice's /addSongs per request
+	private static final int ADD_SONGS_BATCH_SIZE = 1000;
+
+	private final OkHttpClient client;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final LoadTestConfig config;
+
+	private final String songServiceUrl;
+	private final String profileServiceUrl;
+
+	// Limits the number of requests in flight to seedConcurrency
+	private final Semaphore inFlight;
+	private final int seedConcurrency;
+
+	// Counts the requests that failed or were not answered with an OK status since the last phase started
+	private final AtomicLong failures = new AtomicLong();
+
+	public Seeder(OkHttpClient client, LoadTestConfig config) {
+		this.client = client;
+		this.config = config;
+		this.songServiceUrl = config.getString("songServiceUrl");
+		this.profileServiceUrl = config.getString("profileServiceUrl");
+		this.seedConcurrency = config.getInt("seedConcurrency");
+		this.inFlight = new Semaphore(seedConcurrency);
+	}
+
+	/**
+	 * Seeds the songs, users, follows and likes
+	 *
+	 * @return the catalogue of the seeded songs and users
+	 * @throws IOException if the songs can't be added to the Profile Microservice
+	 * @throws InterruptedException if interrupted while waiting for requests to complete
+	 */
+	public Catalogue seed() throws IOException, InterruptedException {
+		int songs = config.getInt("songs");
+		int users = config.getInt("users");
+		Random random = new Random(config.getInt("randomSeed"));
+
+		List<String> songIds = addSongs(songs);
+		Catalogue catalogue = new Catalogue(songIds, users, config.getDouble("zipfExponent"), config.getInt("randomSeed"));
+
+		startPhase();
+		for (int user = 0; user < users; user++) {
+			RequestBody body = new FormBody.Builder().add("userName", Catalogue.userName(user))
+					.add("fullName", "Load Test User " + user).add("password", "password").build();
+			send(new Request.Builder().url(profileServiceUrl + "/profile").post(body).build(), null);
+		}
+		endPhase("users", users);
+
+		startPhase();
+		for (int user = 0; user < users; user++) {
+			for (int i = 0; i < config.getInt("followsPerUser"); i++) {
+				int friend = catalogue.popularUser(random);
+
+				if (friend != user) {
+					send(put(profileServiceUrl + "/followFriend/" + Catalogue.userName(user) + "/"
+							+ Catalogue.userName(friend)), null);
+				}
+			}
+		}
+		endPhase("follows", (long) users * config.getInt("followsPerUser"));
+
+		startPhase();
+		for (int user = 0; user < users; user++) {
+			for (int i = 0; i < config.getInt("likesPerUser"); i++) {
+				send(put(profileServiceUrl + "/likeSong/" + Catalogue.userName(user) + "/" + catalogue.popularSong(random)),
+						null);
+			}
+		}
+		endPhase("likes", (long) users * config.getInt("likesPerUser"));
+
+		return catalogue;
+	}
+
+	/**
+	 * Adds the songs to the Song Microservice one at a time, as only /addSong answers with the new songs' ObjectIDs,
+	 * and then adds them to the Profile Microservice directly, rather than waiting for the Song Microservice's outbox
+	 * to send them, so that they can be liked straight away
+	 */
+	private List<String> addSongs(int songs) throws IOException, InterruptedException {
+		String[] songIds = new String[songs];
+
+		startPhase();
+		for (int song = 0; song < songs; song++) {
+			final int index = song;
+			RequestBody body = new FormBody.Builder().add("songName", "Load Test Song " + song)
+					.add("songArtistFullName", "Load Test Artist " + (song % 1000))
+					.add("songAlbum", "Load Test Album " + (song % 5000)).build();
+
+			send(new Request.Builder().url(songServiceUrl + "/addSong").post(body).build(),
+					response -> songIds[index] = response.path("data").path("id").asText(null));
+		}
+		endPhase("songs", songs);
+
+		List<String> addedSongIds = new ArrayList<String>();
+		for (String songId : songIds) {
+			if (songId != null) {
+				addedSongIds.add(songId);
+			}
+		}
+
+		for (int i = 0; i < addedSongIds.size(); i += ADD_SONGS_BATCH_SIZE) {
+			List<String> batch = addedSongIds.subList(i, Math.min(i + ADD_SONGS_BATCH_SIZE, addedSongIds.size()));
+			Request request = new Request.Builder().url(profileServiceUrl + "/addSongs")
+					.put(RequestBody.create(mapper.writeValueAsBytes(batch), JSON)).build();
+
+			try (Response response = client.newCall(request).execute()) {
+				if (!isOk(mapper.readTree(response.body().byteStream()))) {
+					throw new IOException("The Profile Microservice failed to add the songs " + batch);
+				}
+			}
+		}
+
+		return addedSongIds;
+	}
+
+	private static Request put(String url) {
+		return new Request.Builder().url(url).put(RequestBody.create(new byte[0], null)).build();
+	}
+
+	/**
+	 * Sends the request once fewer than seedConcurrency requests are in flight
+	 *
+	 * @param request the request to send
+	 * @param onOk called with the body of the response, if it has an OK status
+	 */
+	private void send(Request request, Consumer<JsonNode> onOk) throws InterruptedException {
+		inFlight.acquire();
+
+		client.newCall(request).enqueue(new Callback() {
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				failures.incrementAndGet();
+				inFlight.release();
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				try (Response closedResponse = response) {
+					JsonNode body = mapper.readTree(closedResponse.body().byteStream());
+
+					if (!isOk(body)) {
+						failures.incrementAndGet();
+					} else if (onOk != null) {
+						onOk.accept(body);
+					}
+				} catch (IOException e) {
+					failures.incrementAndGet();
+				} finally {
+					inFlight.release();
+				}
+			}
+		});
+	}
+
+	private static boolean isOk(JsonNode body) {
+		return "OK".equals(body.path("status").asText());
+	}
+
+	private void startPhase() {
+		failures.set(0);
+	}
+
+	/**
+	 * Waits for every request of the phase to complete, and reports how many of them failed. Follows and likes drawn
+	 * by popularity repeat themselves, so some of them are expected to be answered as already made.
+	 */
+	private void endPhase(String seeded, long requests) throws InterruptedException {
+		inFlight.acquire(seedConcurrency);
+		inFlight.release(seedConcurrency);
+
+		System.out.printf("Seeded %s: %d requests, %d not OK%n", seeded, requests, failures.get());
+	}
+}
@@ -0,0 +1,39 @@
+package com.csc301.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks from 0 to size - 1, where rank k is drawn with a probability proportional to 1 / (k + 1)^exponent, so a
+ * few ranks are drawn very often and most are drawn rarely, as with the popularity of songs and users. The cumulative
+ * probabilities are computed once, and each draw is a binary search over them.
+ */
+public class ZipfDistribution {
+
+	private final double[] cumulativeWeights;
+
+	/**
+	 * @param size the number of ranks
+	 * @param exponent the skew of the distribution, where 0 draws every rank equally often
+	 */
+	public ZipfDistribution(int size, double exponent) {
+		cumulativeWeights = new double[size];
+		double total = 0;
+
+		for (int k = 0; k < size; k++) {
+			total += 1 / Math.pow(k + 1, exponent);
+			cumulativeWeights[k] = total;
+		}
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return the rank drawn
+	 */
+	public int sample(Random random) {
+		double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+		int index = Arrays.binarySearch(cumulativeWeights, target);
+
+		return Math.min(index >= 0 ? index : -index - 1, cumulativeWeights.length - 1);
+	}
+}
@@ -0,0 +1,54 @@
+package com.csc301.profilemicroservice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Passes every call an OkHttp client makes through a circuit breaker. Calls that fail to connect, time out or get a
+ * server error are recorded as failures, and so are calls slower than the breaker's slow call threshold. While the
+ * breaker is open, calls fail straight away with an IOException instead of waiting on the struggling service, and once
+ * it half-opens, a few calls are let through to probe whether the service has recovered.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+	private final CircuitBreaker circuitBreaker;
+
+	public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		try {
+			circuitBreaker.acquirePermission();
+		} catch (CallNotPermittedException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		long start = System.nanoTime();
+		Response response;
+
+		try {
+			response = chain.proceed(chain.request());
+		} catch (IOException | RuntimeException e) {
+			circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+			throw e;
+		}
+
+		long duration = System.nanoTime() - start;
+
+		if (response.code() >= 500) {
+			circuitBreaker.onError(duration, TimeUnit.NANOSECONDS,
+					new IOException(String.format("%s responded with %d", chain.request().url(), response.code())));
+		} else {
+			circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+		}
+
+		return response;
+	}
+}
@@ -0,0 +1,232 @@
+package com.csc301.profilemicroservice;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Buffers the changes that likes and unlikes make to songs' favourites counts, and sends the net change per song to the
+ * Song Microservice in one request, either every flushIntervalMillis or once flushThreshold changes are waiting. Each
+ * change is merged into its song's net change atomically, and a song is dropped from the buffer as soon as its net
+ * change is zero. Concurrent likes of the same song, and of songs sharing a bin of the map, take turns on its lock; this
+ * is accepted, as a counter per song that the buffer could also drop would lose any change racing with its removal.
+ */
+@Component
+public class FavouritesDeltaBuffer {
+
+	/**
+	 * Where the net changes to the favourites counts are sent when the buffer is flushed
+	 */
+	interface FavouritesSink {
+		/**
+		 * @param batchId the id of the batch, which is the same each time a batch that failed is sent again, so that the
+		 * sink can drop a batch it has already applied
+		 * @param favouritesDeltas the net change to the favourites count of each song, with the songIds as keys
+		 * @return true, if the changes were applied, false if they should be kept and sent again later
+		 */
+		boolean apply(String batchId, Map<String, Long> favouritesDeltas);
+	}
+
+	/**
+	 * A batch of net changes that has been taken from the buffer, and is sent until the sink applies it
+	 */
+	private static class FavouritesBatch {
+		private final String batchId = UUID.randomUUID().toString();
+		private final Map<String, Long> favouritesDeltas = new ConcurrentHashMap<String, Long>();
+	}
+
+	// The number of attempts made to flush the remaining changes when the service shuts down
+	private static final int SHUTDOWN_FLUSH_ATTEMPTS = 5;
+
+	private final FavouritesSink sink;
+
+	// The number of changes that can be buffered before a flush is started without waiting for the next interval
+	private final int flushThreshold;
+
+	// The net change to the favourites count of each song that has not been sent yet, with the songIds as keys
+	private final Map<String, Long> favouritesDeltas = new ConcurrentHashMap<String, Long>();
+
+	// The songs that were deleted, whose changes are dropped rather than buffered or sent, with the songIds as keys
+	private final Cache<String, Boolean> discardedSongs;
+
+	// The batch that was sent but not applied, which is sent again unchanged before any newer changes
+	private volatile FavouritesBatch failedBatch;
+
+	// The number of changes added since the last flush, used to start a flush early
+	private final LongAdder bufferedChanges = new LongAdder();
+
+	// Keeps track of whether an early flush has already been started
+	private final AtomicBoolean flushStarted = new AtomicBoolean(false);
+
+	// Keeps track of whether the buffer has been closed, after which changes are flushed as soon as they are added
+	private volatile boolean closed = false;
+
+	private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+
+	@Autowired
+	public FavouritesDeltaBuffer(SongServiceClient songServiceClient,
+			@Value("${favourites.flushThreshold:1000}") int flushThreshold,
+			@Value("${favourites.discardRetainSeconds:3600}") long discardRetainSeconds) {
+		this(songServiceClient::updateSongFavouritesCounts, flushThreshold, discardRetainSeconds);
+	}
+
+	FavouritesDeltaBuffer(FavouritesSink sink, int flushThreshold, long discardRetainSeconds) {
+		this.sink = sink;
+		this.flushThreshold = flushThreshold;
+		this.discardedSongs = Caffeine.newBuilder().expireAfterWrite(discardRetainSeconds, TimeUnit.SECONDS).build();
+	}
+
+	/**
+	 * Adds a change to the favourites count of the given song to the buffer, unless the song has been deleted
+	 *
+	 * @param songId the songId of the song
+	 * @param delta the change to the song's favourites count, +1 for a like and -1 for an unlike
+	 */
+	public void add(String songId, long delta) {
+
+		if (discardedSongs.getIfPresent(songId) != null) {
+			return;
+		}
+
+		favouritesDeltas.merge(songId, delta, FavouritesDeltaBuffer::sumOrRemove);
+
+		// Once the buffer is closed nothing will flush it again, so the change is sent straight away
+		if (closed) {
+			flush();
+			return;
+		}
+
+		bufferedChanges.increment();
+
+		if (bufferedChanges.sum() >= flushThreshold && flushStarted.compareAndSet(false, true)) {
+			flushExecutor.execute(() -> {
+				try {
+					flush();
+				} finally {
+					flushStarted.set(false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Drops any buffered changes to the favourites count of the given song, for when the song has been deleted. The song
+	 * is remembered for favourites.discardRetainSeconds, so that changes racing with its deletion are dropped too.
+	 *
+	 * @param songId the songId of the song
+	 */
+	public void discard(String songId) {
+		discardedSongs.put(songId, Boolean.TRUE);
+		favouritesDeltas.remove(songId);
+
+		FavouritesBatch batch = failedBatch;
+
+		if (batch != null) {
+			batch.favouritesDeltas.remove(songId);
+		}
+	}
+
+	/**
+	 * Sends the net change to the favourites count of every song with buffered changes to the sink. A batch that the sink
+	 * failed to apply is kept with its batchId, and is sent again unchanged by the next flush before any newer changes,
+	 * so that a sink that applied it but failed to say so can drop it.
+	 *
+	 * @return true, if there was nothing to send or the sink applied the changes, false otherwise
+	 */
+	@Scheduled(fixedDelayString = "${favourites.flushIntervalMillis:1000}")
+	public synchronized boolean flush() {
+		bufferedChanges.reset();
+
+		if (failedBatch != null && !send(failedBatch)) {
+			return false;
+		}
+
+		FavouritesBatch batch = new FavouritesBatch();
+
+		// Each song's net change is removed atomically, so a change added meanwhile starts a new entry for the next flush
+		for (String songId : favouritesDeltas.keySet()) {
+			Long delta = favouritesDeltas.remove(songId);
+
+			if (delta != null) {
+				batch.favouritesDeltas.put(songId, delta);
+			}
+		}
+
+		failedBatch = batch;
+
+		// A song discarded while the batch was being taken from the buffer may not have been removed from it
+		batch.favouritesDeltas.keySet().removeIf(songId -> discardedSongs.getIfPresent(songId) != null);
+
+		return send(batch);
+	}
+
+	/**
+	 * Sends the given batch to the sink, and forgets it once the sink has applied it
+	 *
+	 * @param batch the batch of net changes
+	 * @return true, if the batch was empty or the sink applied it, false otherwise
+	 */
+	private boolean send(FavouritesBatch batch) {
+		boolean applied;
+
+		try {
+			applied = batch.favouritesDeltas.isEmpty() || sink.apply(batch.batchId, batch.favouritesDeltas);
+		} catch (RuntimeException e) {
+			applied = false;
+		}
+
+		if (applied) {
+			failedBatch = null;
+		}
+
+		return applied;
+	}
+
+	/**
+	 * @return the number of songs with buffered changes that have not been taken for a batch yet
+	 */
+	int bufferedSongs() {
+		return favouritesDeltas.size();
+	}
+
+	/**
+	 * Adds two changes to the same song's favourites count
+	 *
+	 * @return the sum of the changes, or null if they cancel out, so that the song is removed from the buffer
+	 */
+	private static Long sumOrRemove(Long delta, Long otherDelta) {
+		long sum = delta + otherDelta;
+
+		return sum == 0 ? null : sum;
+	}
+
+	/**
+	 * Closes the buffer when the service shuts down, flushing every remaining change before it stops
+	 */
+	@PreDestroy
+	public void close() throws InterruptedException {
+		closed = true;
+
+		flushExecutor.shutdown();
+		flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+
+		for (int attempt = 0; attempt < SHUTDOWN_FLUSH_ATTEMPTS && !flush(); attempt++) {
+			Thread.sleep(200L << attempt);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.csc301.profilemicroservice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+public class Neo4jConfiguration {
+
+	/**
+	 * Creates the driver all Neo4j sessions are opened from, which is closed along with its connection pool when the
+	 * service shuts down
+	 *
+	 * @param uri the bolt URI of the Neo4j database
+	 * @param userName the user to log in to the Neo4j database as
+	 * @param password the password of the user
+	 * @param maxConnectionPoolSize the maximum number of connections to the Neo4j database
+	 * @param connectionAcquisitionTimeoutMillis how long to wait for a connection when all of them are in use
+	 * @param maxConnectionLifetimeMillis how long a connection is used for before it is closed and replaced
+	 * @param connectionLivenessCheckTimeoutMillis how long a connection can be idle before it is checked before being used
+	 * @param maxTransactionRetrySeconds how long transactions failing with transient errors are retried for
+	 * @return the driver
+	 */
+	@Bean(destroyMethod = "close")
+	public Driver neo4jDriver(@Value("${neo4j.uri:bolt://localhost:7687}") String uri,
+			@Value("${neo4j.userName:neo4j}") String userName,
+			@Value("${neo4j.password:1234}") String password,
+			@Value("${neo4j.maxConnectionPoolSize:100}") int maxConnectionPoolSize,
+			@Value("${neo4j.connectionAcquisitionTimeoutMillis:60000}") long connectionAcquisitionTimeoutMillis,
+			@Value("${neo4j.maxConnectionLifetimeMillis:3600000}") long maxConnectionLifetimeMillis,
+			@Value("${neo4j.connectionLivenessCheckTimeoutMillis:30000}") long connectionLivenessCheckTimeoutMillis,
+			@Value("${neo4j.maxTransactionRetrySeconds:5}") long maxTransactionRetrySeconds) {
+
+		Config config = Config.build()
+				.withMaxConnectionPoolSize(maxConnectionPoolSize)
+				.withConnectionAcquisitionTimeout(connectionAcquisitionTimeoutMillis, TimeUnit.MILLISECONDS)
+				.withMaxConnectionLifetime(maxConnectionLifetimeMillis, TimeUnit.MILLISECONDS)
+				.withConnectionLivenessCheckTimeout(connectionLivenessCheckTimeoutMillis, TimeUnit.MILLISECONDS)
+				.withMaxTransactionRetryTime(maxTransactionRetrySeconds, TimeUnit.SECONDS)
+				.toConfig();
+
+		return GraphDatabase.driver(uri, AuthTokens.basic(userName, password), config);
+	}
+
+	/**
+	 * Publishes the usage of the driver's connection pool, so that it can be sized against the number of request threads,
+	 * when neo4j.metrics.enabled is set (see ProfileMicroserviceApplication.main)
+	 *
+	 * @param driver the driver whose connection pool is measured
+	 * @return the binder of the connection pool metrics
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "neo4j.metrics.enabled", havingValue = "true")
+	public MeterBinder neo4jPoolMetrics(Driver driver) {
+		return new Neo4jPoolMetrics(driver);
+	}
+}
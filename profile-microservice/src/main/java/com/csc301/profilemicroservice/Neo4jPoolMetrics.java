@@ -0,0 +1,91 @@
+package com.csc301.profilemicroservice;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.neo4j.driver.internal.InternalDriver;
+import org.neo4j.driver.internal.metrics.spi.ConnectionPoolMetrics;
+import org.neo4j.driver.internal.metrics.spi.Metrics;
+import org.neo4j.driver.v1.Driver;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the usage of the Neo4j driver's connection pool, on a best-effort basis. The 1.7 driver only exposes this
+ * through its internal metrics, which it only records when they were switched on before it was created, and which are
+ * read from every pool it has (one per database server) each time they are published. Nothing is registered unless
+ * they were switched on, or for a driver that is not the driver's own InternalDriver, so the metrics are missing
+ * rather than wrong if either changes.
+ */
+public class Neo4jPoolMetrics implements MeterBinder {
+
+	private final Driver driver;
+
+	public Neo4jPoolMetrics(Driver driver) {
+		this.driver = driver;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		// Without the switch the driver records nothing, and anything but its own driver has nothing to read
+		if (!Boolean.getBoolean(Metrics.DRIVER_METRICS_ENABLED_KEY) || !(driver instanceof InternalDriver)) {
+			return;
+		}
+
+		gauge(registry, "neo4j.pool.connections.inUse", "connections lent out to sessions", ConnectionPoolMetrics::inUse);
+		gauge(registry, "neo4j.pool.connections.idle", "connections waiting in the pool", ConnectionPoolMetrics::idle);
+		gauge(registry, "neo4j.pool.acquiring", "sessions waiting for a connection", ConnectionPoolMetrics::acquiring);
+
+		counter(registry, "neo4j.pool.acquired", "connections acquired from the pool", ConnectionPoolMetrics::acquired);
+		counter(registry, "neo4j.pool.acquisition.timeouts", "acquisitions that timed out",
+				ConnectionPoolMetrics::timedOutToAcquire);
+		counter(registry, "neo4j.pool.connections.failed", "connections that failed to be created",
+				ConnectionPoolMetrics::failedToCreate);
+
+		timeGauge(registry, "neo4j.pool.acquisition.mean", "mean time taken to acquire a connection",
+				pool -> pool.acquisitionTimeHistogram().mean());
+		timeGauge(registry, "neo4j.pool.acquisition.max", "longest time taken to acquire a connection",
+				pool -> pool.acquisitionTimeHistogram().max());
+		timeGauge(registry, "neo4j.pool.acquisition.p99", "99th percentile of the time taken to acquire a connection",
+				pool -> pool.acquisitionTimeHistogram().valueAtPercentile(99));
+	}
+
+	private void gauge(MeterRegistry registry, String name, String description,
+			ToDoubleFunction<ConnectionPoolMetrics> value) {
+		Gauge.builder(name, this, metrics -> metrics.sum(value)).description(description).register(registry);
+	}
+
+	private void counter(MeterRegistry registry, String name, String description,
+			ToDoubleFunction<ConnectionPoolMetrics> value) {
+		FunctionCounter.builder(name, this, metrics -> metrics.sum(value)).description(description).register(registry);
+	}
+
+	private void timeGauge(MeterRegistry registry, String name, String description,
+			ToDoubleFunction<ConnectionPoolMetrics> nanos) {
+		TimeGauge.builder(name, this, TimeUnit.NANOSECONDS, metrics -> metrics.max(nanos)).description(description)
+				.register(registry);
+	}
+
+	/**
+	 * Adds up the given count over the driver's connection pools
+	 */
+	private double sum(ToDoubleFunction<ConnectionPoolMetrics> value) {
+		return pools().stream().mapToDouble(value).sum();
+	}
+
+	/**
+	 * Finds the largest of the given time over the driver's connection pools
+	 */
+	private double max(ToDoubleFunction<ConnectionPoolMetrics> value) {
+		return pools().stream().mapToDouble(value).max().orElse(0);
+	}
+
+	private Collection<ConnectionPoolMetrics> pools() {
+		return ((InternalDriver) driver).metrics().connectionPoolMetrics().values();
+	}
+}
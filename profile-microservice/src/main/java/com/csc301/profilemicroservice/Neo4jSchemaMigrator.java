@@ -0,0 +1,138 @@
+package com.csc301.profilemicroservice;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.driver.v1.exceptions.DatabaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Brings the Neo4j schema (constraints and indexes) up to date when the service starts. Each migration is applied once,
+ * and the version of the last one applied is recorded in the schemaVersion node. Migrations run while the application
+ * context is being created, so the web server only starts accepting requests once the indexes they create are online.
+ * Property existence constraints need Neo4j Enterprise Edition, so on Community Edition they are skipped with a warning
+ * and the rest of their migration is still applied.
+ */
+@Component
+public class Neo4jSchemaMigrator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Neo4jSchemaMigrator.class);
+
+	// Property existence constraints, which fail on Neo4j Community Edition
+	private static final Set<String> ENTERPRISE_ONLY = new HashSet<String>(Arrays.asList(
+			"CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.userName)",
+			"CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.password)",
+			"CREATE CONSTRAINT ON (nPlaylist:playlist) ASSERT exists(nPlaylist.plName)",
+			"CREATE CONSTRAINT ON (nSong:song) ASSERT exists(nSong.songId)"));
+
+	// The migrations, in the order they are applied, where the version of each is its position in the list plus one
+	private static final List<List<String>> MIGRATIONS = Arrays.asList(
+			// 1: profiles must have a unique userName and a password, playlists a plName, and songs a songId
+			Arrays.asList(
+					"CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.userName)",
+					"CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.password)",
+					"CREATE CONSTRAINT ON (nProfile:profile) ASSERT nProfile.userName IS UNIQUE",
+					"CREATE CONSTRAINT ON (nPlaylist:playlist) ASSERT exists(nPlaylist.plName)",
+					"CREATE CONSTRAINT ON (nSong:song) ASSERT exists(nSong.songId)"),
+			// 2: playlists and songs are looked up through the indexes backing these constraints instead of label scans
+			Arrays.asList(
+					"CREATE CONSTRAINT ON (nPlaylist:playlist) ASSERT nPlaylist.plName IS UNIQUE",
+					"CREATE CONSTRAINT ON (nSong:song) ASSERT nSong.songId IS UNIQUE"),
+			// 3: songs being deleted in the background are found by the deletion they belong to
+			Collections.singletonList("CREATE INDEX ON :deletedSong(deletionId)"));
+
+	private final Neo4jTransactions transactions;
+
+	// The number of seconds to wait for new indexes to come online
+	private final long awaitIndexesSeconds;
+
+	public Neo4jSchemaMigrator(Neo4jTransactions transactions,
+			@Value("${neo4jSchema.awaitIndexesSeconds:300}") long awaitIndexesSeconds) {
+		this.transactions = transactions;
+		this.awaitIndexesSeconds = awaitIndexesSeconds;
+	}
+
+	/**
+	 * Applies the migrations that haven't been applied yet, and waits for their indexes to come online
+	 */
+	@PostConstruct
+	public void migrate() {
+		int version = getSchemaVersion();
+
+		for (int i = version; i < MIGRATIONS.size(); i++) {
+
+			// Schema changes can't share a transaction with other queries, so each one is run in its own
+			for (String queryStr : MIGRATIONS.get(i)) {
+				try {
+					transactions.write("migrateSchema", trans -> {
+						trans.run(queryStr).consume();
+
+						trans.success();
+						return null;
+					});
+				} catch (ClientException | DatabaseException e) {
+					if (!ENTERPRISE_ONLY.contains(queryStr)) {
+						throw e;
+					}
+					LOGGER.warn("Skipped schema change \"{}\", which needs Neo4j Enterprise Edition: {}", queryStr,
+							e.getMessage());
+				}
+			}
+
+			setSchemaVersion(i + 1);
+		}
+
+		transactions.read("awaitIndexes", trans -> {
+			Map<String, Object> params = new HashMap<String, Object>();
+			params.put("timeout", awaitIndexesSeconds);
+
+			// Query to wait until every index, including those backing the constraints, is online
+			trans.run("CALL db.awaitIndexes($timeout)", params).consume();
+
+			trans.success();
+			return null;
+		});
+	}
+
+	/**
+	 * @return the version of the last migration applied, or 0 if none has been
+	 */
+	public int getSchemaVersion() {
+		return transactions.read("getSchemaVersion", trans -> {
+			String queryStr = "OPTIONAL MATCH (v:schemaVersion) RETURN v.version AS version";
+			org.neo4j.driver.v1.Value version = trans.run(queryStr).single().get("version");
+
+			trans.success();
+			return version.isNull() ? 0 : version.asInt();
+		});
+	}
+
+	/**
+	 * Records the version of the last migration applied
+	 *
+	 * @param version the version of the migration
+	 */
+	private void setSchemaVersion(int version) {
+		transactions.write("setSchemaVersion", trans -> {
+			Map<String, Object> params = new HashMap<String, Object>();
+			params.put("version", version);
+
+			String queryStr = "MERGE (v:schemaVersion) SET v.version = $version";
+			trans.run(queryStr, params).consume();
+
+			trans.success();
+			return null;
+		});
+	}
+}
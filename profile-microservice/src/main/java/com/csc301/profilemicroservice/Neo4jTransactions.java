@@ -0,0 +1,207 @@
+package com.csc301.profilemicroservice;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.TransactionWork;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class Neo4jTransactions {
+
+	private final Driver driver;
+
+	private final MeterRegistry meterRegistry;
+
+	// Count the attempts that had to be made again after a failed one
+	private final Counter readRetries;
+	private final Counter writeRetries;
+
+	/**
+	 * Creates the runner of managed Neo4j transactions. Retries are published as the "neo4j.transactions.retries" metric,
+	 * and transient errors (such as deadlocks between writers contending for the same nodes) as the
+	 * "neo4j.transactions.transient.errors" metric, tagged with their Neo4j status code. The time each transaction took,
+	 * including its retries and commit, is published as the "neo4j.queries" metric, tagged with the name of the query,
+	 * the access mode and the exception it failed with, if any.
+	 *
+	 * @param driver the driver the sessions are opened from
+	 * @param meterRegistry the registry the retry and error counts are published to
+	 */
+	public Neo4jTransactions(Driver driver, MeterRegistry meterRegistry) {
+		this.driver = driver;
+		this.meterRegistry = meterRegistry;
+		this.readRetries = meterRegistry.counter("neo4j.transactions.retries", "access", "read");
+		this.writeRetries = meterRegistry.counter("neo4j.transactions.retries", "access", "write");
+	}
+
+	/**
+	 * Runs the given work in a write transaction. The driver retries the whole of the work, with jittered exponential
+	 * backoff, when it fails with a transient error, until neo4j.maxTransactionRetrySeconds runs out. The work
+	 * must therefore consume its results within the transaction, and must not change any state outside of it.
+	 *
+	 * @param query the name of the query, which the timing of the transaction is tagged with
+	 * @param work the queries to run in the transaction
+	 * @return the result of the work
+	 */
+	public <T> T write(String query, TransactionWork<T> work) {
+		long start = System.nanoTime();
+		String exception = "None";
+
+		try (Session session = driver.session()) {
+			return session.writeTransaction(counted(work, writeRetries));
+		} catch (RuntimeException e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			recordQuery(query, "write", exception, start);
+		}
+	}
+
+	/**
+	 * Runs the given work in a read transaction, retrying it on transient errors the same way as write
+	 *
+	 * @param query the name of the query, which the timing of the transaction is tagged with
+	 * @param work the queries to run in the transaction
+	 * @return the result of the work
+	 */
+	public <T> T read(String query, TransactionWork<T> work) {
+		long start = System.nanoTime();
+		String exception = "None";
+
+		try (Session session = driver.session()) {
+			return session.readTransaction(counted(work, readRetries));
+		} catch (RuntimeException e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			recordQuery(query, "read", exception, start);
+		}
+	}
+
+	/**
+	 * Runs the given work in a write transaction without blocking, retrying it on transient errors the same way as
+	 * write. The work chains its queries with runAsync, and the session is closed once the transaction completes.
+	 *
+	 * @param query the name of the query, which the timing of the transaction is tagged with
+	 * @param work the queries to run in the transaction
+	 * @return a stage completed with the result of the work
+	 */
+	public <T> CompletionStage<T> writeAsync(String query, TransactionWork<CompletionStage<T>> work) {
+		long start = System.nanoTime();
+		Session session = driver.session();
+
+		return timed(query, "write", start,
+				closingSession(session, session.writeTransactionAsync(countedAsync(work, writeRetries))));
+	}
+
+	/**
+	 * Runs the given work in a read transaction without blocking, retrying it on transient errors the same way as write
+	 *
+	 * @param query the name of the query, which the timing of the transaction is tagged with
+	 * @param work the queries to run in the transaction
+	 * @return a stage completed with the result of the work
+	 */
+	public <T> CompletionStage<T> readAsync(String query, TransactionWork<CompletionStage<T>> work) {
+		long start = System.nanoTime();
+		Session session = driver.session();
+
+		return timed(query, "read", start,
+				closingSession(session, session.readTransactionAsync(countedAsync(work, readRetries))));
+	}
+
+	/**
+	 * Closes the given session once the given transaction completes, whether or not it succeeded
+	 *
+	 * @param session the session the transaction was run in
+	 * @param transaction the stage completed with the result of the transaction
+	 * @return a stage completed with the result of the transaction once the session is closed
+	 */
+	private <T> CompletionStage<T> closingSession(Session session, CompletionStage<T> transaction) {
+		return transaction.handle((result, error) -> null).thenCompose(ignored -> session.closeAsync())
+				.thenCompose(ignored -> transaction);
+	}
+
+	/**
+	 * Wraps the given work so that every attempt after the first, and every transient error, is counted
+	 *
+	 * @param work the queries to run in the transaction
+	 * @param retries the counter of retries for the kind of transaction the work is run in
+	 * @return the wrapped work
+	 */
+	private <T> TransactionWork<T> counted(TransactionWork<T> work, Counter retries) {
+		AtomicInteger attempts = new AtomicInteger();
+
+		return trans -> {
+			if (attempts.incrementAndGet() > 1) {
+				retries.increment();
+			}
+
+			try {
+				return work.execute(trans);
+			} catch (TransientException e) {
+				countTransientError(e);
+				throw e;
+			}
+		};
+	}
+
+	/**
+	 * Wraps the given asynchronous work so that every attempt after the first, and every transient error, is counted
+	 *
+	 * @param work the queries to run in the transaction
+	 * @param retries the counter of retries for the kind of transaction the work is run in
+	 * @return the wrapped work
+	 */
+	private <T> TransactionWork<CompletionStage<T>> countedAsync(TransactionWork<CompletionStage<T>> work,
+			Counter retries) {
+		AtomicInteger attempts = new AtomicInteger();
+
+		return trans -> {
+			if (attempts.incrementAndGet() > 1) {
+				retries.increment();
+			}
+
+			return work.execute(trans).whenComplete((result, error) -> {
+				Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+
+				if (cause instanceof TransientException) {
+					countTransientError((TransientException) cause);
+				}
+			});
+		};
+	}
+
+	/**
+	 * Records the time the given transaction took once it completes, whether or not it succeeded
+	 *
+	 * @param query the name of the query run in the transaction
+	 * @param access the access mode of the transaction, read or write
+	 * @param start when the transaction was started, as given by System.nanoTime
+	 * @param transaction the stage completed with the result of the transaction
+	 * @return the stage completed with the result of the transaction
+	 */
+	private <T> CompletionStage<T> timed(String query, String access, long start, CompletionStage<T> transaction) {
+		return transaction.whenComplete((result, error) -> {
+			Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+
+			recordQuery(query, access, cause == null ? "None" : cause.getClass().getSimpleName(), start);
+		});
+	}
+
+	private void recordQuery(String query, String access, String exception, long start) {
+		meterRegistry.timer("neo4j.queries", "query", query, "access", access, "exception", exception)
+				.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	private void countTransientError(TransientException e) {
+		meterRegistry.counter("neo4j.transactions.transient.errors", "code", e.code()).increment();
+	}
+}
@@ -1,7 +1,10 @@
 package com.csc301.profilemicroservice;
 
+import java.util.List;
+
 public interface PlaylistDriver {
 	DbQueryStatus likeSong(String userName, String songId);
 	DbQueryStatus unlikeSong(String userName, String songId);
 	DbQueryStatus deleteSongFromDb(String songId);
+	DbQueryStatus deleteSongsFromDb(List<String> songIds);
 }
\ No newline at end of file
@@ -1,41 +1,47 @@
 package com.csc301.profilemicroservice;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import org.neo4j.driver.v1.Driver;
-import org.neo4j.driver.v1.Session;
-import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResultCursor;
 import org.springframework.stereotype.Repository;
-import org.neo4j.driver.v1.Transaction;
 
 @Repository
 public class PlaylistDriverImpl implements PlaylistDriver {
 
-	Driver driver = ProfileMicroserviceApplication.driver;
-
-	/**
-	 *Initializes the Neo4j database by creating constraints (ensuring that the specified property will exist for a node) for the
-	 *playlist and song node. Namely, plName (for the playlist node) and songId (for the song node).
-	 */
-	public static void InitPlaylistDb() {
-		String queryStr;
-
-		try (Session session = ProfileMicroserviceApplication.driver.session()) {
-			try (Transaction trans = session.beginTransaction()) {
-				queryStr = "CREATE CONSTRAINT ON (nPlaylist:playlist) ASSERT exists(nPlaylist.plName)";
-				trans.run(queryStr);
-
-				queryStr = "CREATE CONSTRAINT ON (nSong:song) ASSERT exists(nSong.songId)";
-				trans.run(queryStr);
-
-				trans.success();
-			}
-			session.close();
-		}
+	/* Query to find the user's playlist and the song, and to make the relationship between them unless it already
+	 * exists */
+	private static final String LIKE_SONG_QUERY = "OPTIONAL MATCH (p:profile {userName: $username})-[:created]->(pl:playlist {plName: $playlistName}) "
+			+ "OPTIONAL MATCH (s:song {songId: $songId}) "
+			+ "OPTIONAL MATCH (pl)-[i:includes]->(s) "
+			+ "WITH p, pl, s, i IS NOT NULL AS alreadyLiked "
+			+ "FOREACH (ignored IN CASE WHEN p IS NOT NULL AND s IS NOT NULL AND NOT alreadyLiked THEN [1] ELSE [] END | "
+			+ "MERGE (pl)-[:includes]->(s)) "
+			+ "RETURN p IS NOT NULL AS userFound, s IS NOT NULL AS songFound, alreadyLiked";
+
+	// Query to find the user's playlist and the song, and to remove the relationship between them if it exists
+	private static final String UNLIKE_SONG_QUERY = "OPTIONAL MATCH (p:profile {userName: $username})-[:created]->(pl:playlist {plName: $playlistName}) "
+			+ "OPTIONAL MATCH (s:song {songId: $songId}) "
+			+ "OPTIONAL MATCH (pl)-[i:includes]->(s) "
+			+ "WITH p, s, i, i IS NOT NULL AS hasBeenLiked "
+			+ "DELETE i "
+			+ "RETURN p IS NOT NULL AS userFound, s IS NOT NULL AS songFound, hasBeenLiked";
+
+	// Runs the queries in managed transactions, which are retried on transient errors
+	private final Neo4jTransactions transactions;
+
+	// Deletes songs and their relationships in the background
+	private final SongDeletions songDeletions;
+
+	public PlaylistDriverImpl(Neo4jTransactions transactions, SongDeletions songDeletions) {
+		this.transactions = transactions;
+		this.songDeletions = songDeletions;
 	}
 
-	
 	/**
 	 * Adds a song node into the Neo4j database with the given songId
 	 * 
@@ -59,21 +65,18 @@ public class PlaylistDriverImpl implements PlaylistDriver {
 				return new DbQueryStatus("SONG DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
 			}
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
+			try {
+				transactions.write("addSong", trans -> {
 					Map<String, Object> params = new HashMap<String, Object>();
 					params.put("songId", songId);
 
 					// Query to create a song node in Neo4j with the given songId
 					String queryStr = "MERGE (s:song {songId: $songId})";
-					trans.run(queryStr, params);
+					trans.run(queryStr, params).consume();
 
 					trans.success();
-
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
+					return null;
+				});
 			} catch (Exception e) {
 				goodConnection = false;
 			}
@@ -90,197 +93,218 @@ public class PlaylistDriverImpl implements PlaylistDriver {
 	}
 
 	/**
-	 * Creates a direct relationship from the given user's playlist to the song labelled, "includes", in the Neo4j database
+	 * Adds a song node into the Neo4j database for each of the given songIds in a single query, skipping songs that
+	 * already exist
 	 * 
-	 * @param songId the songId property of the song node in the Neo4j database
-	 * @param userName the userName property of the profile node in the Neo4j database
+	 * @param songIds the songId properties of the song nodes in the Neo4j database
 	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
 	 */
-	@Override
-	public DbQueryStatus likeSong(String userName, String songId) {
+	public DbQueryStatus addSongs(List<String> songIds) {
 
 		DbQueryStatus queryStatus;
 
 		// Keeps track of whether the connection to Neo4j is successful
 		boolean goodConnection = true;
 
-		// Keeps track of whether the song has already been liked by the user
-		boolean alreadyLiked = false;
-
-		// Checking if any of the parameters are empty
-		if (userName.isEmpty() || songId.isEmpty()) {
+		// Checking if the parameter is empty
+		if (songIds == null || songIds.isEmpty()) {
 			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
 
-			// Checking if the song or user exists in Neo4j
-			if (!songExists(songId) || !userExists(userName)) {
-				return new DbQueryStatus("SONG OR USER DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
-
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
+			try {
+				transactions.write("addSongs", trans -> {
 					Map<String, Object> params = new HashMap<String, Object>();
-					params.put("songId", songId);
-					params.put("playlistName", userName + "-favorites");
-
-					// Query to check if the user has already liked the song
-					String queryStr = "RETURN EXISTS ((:playlist {plName: $playlistName})-[:includes]->(:song {songId: $songId}))";
-					StatementResult result = trans.run(queryStr, params);
-					
-					// Checking if the user has already liked the song
-					if (result.next().get(0).toString().equals("FALSE")) {
-						
-						// Making the relationship between the user's playlist and song 
-						queryStr = "MATCH (pl:playlist), (s:song) WHERE pl.plName = $playlistName AND s.songId = $songId MERGE (pl)-[:includes]->(s)";
-						trans.run(queryStr, params);
-					} else {
-						alreadyLiked = true;
-					}
+					params.put("songIds", songIds);
 
-					trans.success();
+					// Query to create a song node in Neo4j for each of the given songIds
+					String queryStr = "UNWIND $songIds AS songId MERGE (s:song {songId: songId})";
+					trans.run(queryStr, params).consume();
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
+					trans.success();
+					return null;
+				});
 			} catch (Exception e) {
 				goodConnection = false;
 			}
 
 			if (goodConnection) {
-				if (!alreadyLiked) {
-					queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				} else {
-					queryStatus = new DbQueryStatus("ALREADY LIKED", DbQueryExecResult.QUERY_OK);
-				}
-
+				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 			} else {
 				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
 			}
+
 		}
 
 		return queryStatus;
 	}
 
 	/**
-	 * Removes a direct relationship from the given user's playlist to the song labelled, "includes", in the Neo4j database
+	 * Creates a direct relationship from the given user's playlist to the song labelled, "includes", in the Neo4j database.
+	 * Checking that the user and song exist, checking whether the song is already liked, and creating the relationship
+	 * are all done by a single query.
 	 * 
 	 * @param songId the songId property of the song node in the Neo4j database
 	 * @param userName the userName property of the profile node in the Neo4j database
 	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
 	 */
 	@Override
-	public DbQueryStatus unlikeSong(String userName, String songId) {
+	public DbQueryStatus likeSong(String userName, String songId) {
 
-		DbQueryStatus queryStatus;
+		// Checking if any of the parameters are empty
+		if (userName.isEmpty() || songId.isEmpty()) {
+			return new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
+
+		try {
+			Record result = transactions.write("likeSong", trans -> {
+				Record record = trans.run(LIKE_SONG_QUERY, songParams(userName, songId)).single();
+
+				trans.success();
+				return record;
+			});
+
+			return likeSongStatus(result);
+		} catch (Exception e) {
+			return new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
+	}
+
+	/**
+	 * Likes the given song the same way as likeSong, without blocking the calling thread while the query runs
+	 * 
+	 * @param songId the songId property of the song node in the Neo4j database
+	 * @param userName the userName property of the profile node in the Neo4j database
+	 * @return a future completed with the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	public CompletableFuture<DbQueryStatus> likeSongAsync(String userName, String songId) {
+
+		// Checking if any of the parameters are empty
+		if (userName.isEmpty() || songId.isEmpty()) {
+			return CompletableFuture.completedFuture(
+					new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC));
+		}
+
+		return transactions.writeAsync("likeSong",
+				trans -> trans.runAsync(LIKE_SONG_QUERY, songParams(userName, songId))
+						.thenCompose(StatementResultCursor::singleAsync))
+				.thenApply(this::likeSongStatus)
+				.exceptionally(e -> new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC))
+				.toCompletableFuture();
+	}
+
+	/**
+	 * Removes a direct relationship from the given user's playlist to the song labelled, "includes", in the Neo4j database.
+	 * Checking that the user and song exist and removing the relationship are done by a single query.
+	 * 
+	 * @param songId the songId property of the song node in the Neo4j database
+	 * @param userName the userName property of the profile node in the Neo4j database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	@Override
+	public DbQueryStatus unlikeSong(String userName, String songId) {
 
-		// Keeps track of whether the connection to Neo4j is successful
-		boolean goodConnection = true;
-		
-		// Keeps track of whether the song has been liked by the user
-		boolean hasBeenLiked = false;
-		
 		// Checks if any of the parameters are empty
 		if (userName.isEmpty() || songId.isEmpty()) {
-			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
-		} else {
-			
-			// Checking if the given songId or user exists in Neo4j
-			if (!songExists(songId) || !userExists(userName)) {
-				return new DbQueryStatus("SONG OR USER DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
+			return new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
-					Map<String, Object> params = new HashMap<String, Object>();
-					params.put("songId", songId);
-					params.put("playlistName", userName + "-favorites");
-					
-					
-					// Query to check if the user has liked the song before
-					String queryStr = "RETURN EXISTS ((:playlist {plName: $playlistName})-[:includes]->(:song {songId: $songId}))";
-					StatementResult result = trans.run(queryStr, params);
-
-					if (result.next().get(0).toString().equals("TRUE")) {
-						
-						// Query to remove the given song from the user's playlist
-						queryStr = "MATCH (:playlist {plName: $playlistName})-[i:includes]->(:song {songId: $songId}) DELETE i";
-						trans.run(queryStr, params);
-						hasBeenLiked = true;
-					}
+		try {
+			Record result = transactions.write("unlikeSong", trans -> {
+				Record record = trans.run(UNLIKE_SONG_QUERY, songParams(userName, songId)).single();
 
-					trans.success();
+				trans.success();
+				return record;
+			});
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
-			} catch (Exception e) {
-				goodConnection = false;
-			}
+			return unlikeSongStatus(result);
+		} catch (Exception e) {
+			return new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
+	}
 
-			if (goodConnection) {
-				if (hasBeenLiked) {
-					queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				} else {
-					queryStatus = new DbQueryStatus("SONG NOT IN USER'S FAVORITES",
-							DbQueryExecResult.QUERY_ERROR_GENERIC);
-				}
+	/**
+	 * Unlikes the given song the same way as unlikeSong, without blocking the calling thread while the query runs
+	 * 
+	 * @param songId the songId property of the song node in the Neo4j database
+	 * @param userName the userName property of the profile node in the Neo4j database
+	 * @return a future completed with the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	public CompletableFuture<DbQueryStatus> unlikeSongAsync(String userName, String songId) {
 
-			} else {
-				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
+		// Checks if any of the parameters are empty
+		if (userName.isEmpty() || songId.isEmpty()) {
+			return CompletableFuture.completedFuture(
+					new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC));
 		}
 
-		return queryStatus;
+		return transactions.writeAsync("unlikeSong",
+				trans -> trans.runAsync(UNLIKE_SONG_QUERY, songParams(userName, songId))
+						.thenCompose(StatementResultCursor::singleAsync))
+				.thenApply(this::unlikeSongStatus)
+				.exceptionally(e -> new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC))
+				.toCompletableFuture();
 	}
 
 	/**
-	 * Removes a song node from the Neo4j database, including all of its relationships
+	 * Removes a song node from the Neo4j database, including all of its relationships. The song is hidden straight away,
+	 * and its relationships are deleted in batches in the background.
 	 * 
 	 * @param songId the songId property of the song node in the Neo4j database
-	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the progress of the
+	 * deletion, whose operationId can be used to follow it
 	 */
 	@Override
 	public DbQueryStatus deleteSongFromDb(String songId) {
 
 		DbQueryStatus queryStatus;
 
-		// Keeps track of whether the connection to Neo4j is successful
-		boolean goodConnection = true;
-		
 		// Checks if the parameter is empty
 		if (songId.isEmpty()) {
 			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
-			
-			// Checks if the given song exists in Neo4j
-			if (!songExists(songId)) {
-				return new DbQueryStatus("SONG DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+
+			SongDeletions.SongDeletion deletion;
+			try {
+				deletion = songDeletions.start(Collections.singletonList(songId));
+			} catch (Exception e) {
+				return new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
 			}
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
-					Map<String, Object> params = new HashMap<String, Object>();
-					params.put("songId", songId);
-					
-					// Query to delete the song and all its relationships from Neo4j
-					String queryStr = "MATCH (s:song) WHERE s.songId = $songId DETACH DELETE s";
-					trans.run(queryStr, params);
+			// Checks if the given song existed in Neo4j
+			if (deletion.getSongsDeleted() == 0) {
+				queryStatus = new DbQueryStatus("SONG DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else {
+				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+				queryStatus.setData(deletion);
+			}
+		}
 
-					trans.success();
+		return queryStatus;
+	}
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
-			} catch (Exception e) {
-				goodConnection = false;
-			}
+	/**
+	 * Removes the song nodes with the given songIds from the Neo4j database, including all of their relationships. The
+	 * songs are hidden straight away, and their relationships are deleted in batches in the background. Songs that don't
+	 * exist are skipped, so the same request can safely be sent more than once.
+	 * 
+	 * @param songIds the songId properties of the song nodes in the Neo4j database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the progress of the
+	 * deletion, whose operationId can be used to follow it
+	 */
+	@Override
+	public DbQueryStatus deleteSongsFromDb(List<String> songIds) {
 
-			if (goodConnection) {
+		DbQueryStatus queryStatus;
+
+		// Checks if the parameter is empty
+		if (songIds == null || songIds.isEmpty()) {
+			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else {
+
+			try {
 				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-			} else {
+				queryStatus.setData(songDeletions.start(songIds));
+			} catch (Exception e) {
 				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
 			}
 		}
@@ -288,41 +312,81 @@ public class PlaylistDriverImpl implements PlaylistDriver {
 		return queryStatus;
 	}
 
+	/**
+	 * Finds the progress of deleting songs from the Neo4j database
+	 * 
+	 * @param operationId the ID of the deletion, returned when it was started
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the progress of the
+	 * deletion
+	 */
+	public DbQueryStatus getSongDeletion(String operationId) {
+
+		SongDeletions.SongDeletion deletion = songDeletions.getDeletion(operationId);
+
+		if (deletion == null) {
+			return new DbQueryStatus("DELETION NOT FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
+		}
+
+		DbQueryStatus queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		queryStatus.setData(deletion);
+
+		return queryStatus;
+	}
+
 	
 	/**********************
 	 *  HELPER FUNCTIONS  *
 	 *********************/
 	
+
 	/**
-	 * Checks if a user exists in the Neo4j database
+	 * Builds the parameters of the queries that like and unlike songs
 	 * 
-	 * @param username the userName property of the profile node in the Neo4j database
-	 * @return true, if the user exists, false otherwise
+	 * @param userName the userName property of the profile node in the Neo4j database
+	 * @param songId the songId property of the song node in the Neo4j database
+	 * @return the parameters of the query
 	 */
-	public boolean userExists(String username) {
-		boolean exists = false;
+	private static Map<String, Object> songParams(String userName, String songId) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("username", userName);
+		params.put("songId", songId);
+		params.put("playlistName", userName + "-favorites");
 
-		try (Session session = ProfileMicroserviceApplication.driver.session()) {
-			try (Transaction trans = session.beginTransaction()) {
-				Map<String, Object> params = new HashMap<String, Object>();
-				params.put("username", username);
-
-				String queryStr = "MATCH (p:profile) WHERE p.userName = $username return p";
-				StatementResult result = trans.run(queryStr, params);
-
-				if (result.hasNext()) {
-					exists = true;
-				}
-
-				trans.success();
+		return params;
+	}
 
-			} catch (Exception e) {
-			}
-			session.close();
-		} catch (Exception e) {
+	/**
+	 * Finds the outcome of liking a song from the flags returned by LIKE_SONG_QUERY
+	 * 
+	 * @param result the record returned by the query
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	private DbQueryStatus likeSongStatus(Record result) {
+		if (!result.get("userFound").asBoolean()) {
+			return new DbQueryStatus("USER DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else if (!result.get("songFound").asBoolean()) {
+			return new DbQueryStatus("SONG DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else if (result.get("alreadyLiked").asBoolean()) {
+			return new DbQueryStatus("ALREADY LIKED", DbQueryExecResult.QUERY_OK);
 		}
+		return new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+	}
 
-		return exists;
+	/**
+	 * Finds the outcome of unliking a song from the flags returned by UNLIKE_SONG_QUERY
+	 * 
+	 * @param result the record returned by the query
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	private DbQueryStatus unlikeSongStatus(Record result) {
+		if (!result.get("userFound").asBoolean()) {
+			return new DbQueryStatus("USER DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else if (!result.get("songFound").asBoolean()) {
+			return new DbQueryStatus("SONG DNE", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else if (!result.get("hasBeenLiked").asBoolean()) {
+			return new DbQueryStatus("SONG NOT IN USER'S FAVORITES", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
+		return new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 	}
 
 	/**
@@ -334,23 +398,17 @@ public class PlaylistDriverImpl implements PlaylistDriver {
 	public boolean songExists(String songId) {
 		boolean exists = false;
 
-		try (Session session = ProfileMicroserviceApplication.driver.session()) {
-			try (Transaction trans = session.beginTransaction()) {
+		try {
+			exists = transactions.read("songExists", trans -> {
 				Map<String, Object> params = new HashMap<String, Object>();
 				params.put("songId", songId);
 
 				String queryStr = "MATCH (s:song) WHERE s.songId = $songId return s";
-				StatementResult result = trans.run(queryStr, params);
-
-				if (result.hasNext()) {
-					exists = true;
-				}
+				boolean found = trans.run(queryStr, params).hasNext();
 
 				trans.success();
-
-			} catch (Exception e) {
-			}
-			session.close();
+				return found;
+			});
 		} catch (Exception e) {
 		}
 
@@ -1,28 +1,23 @@
 package com.csc301.profilemicroservice;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import okhttp3.Call;
-import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -41,11 +36,27 @@ public class ProfileController {
 	@Autowired
 	private final PlaylistDriverImpl playlistDriver;
 
-	OkHttpClient client = new OkHttpClient();
+	@Autowired
+	private final SongMetadataCache songMetadataCache;
+
+	@Autowired
+	private final FavouritesDeltaBuffer favouritesDeltaBuffer;
+
+	@Autowired
+	private final SongServiceClient songServiceClient;
+
+	// Keeps track of whether the busiest routes release their request thread while waiting on Neo4j and the Song Microservice
+	@Value("${asyncMode.enabled:false}")
+	private boolean asyncMode;
 
-	public ProfileController(ProfileDriverImpl profileDriver, PlaylistDriverImpl playlistDriver) {
+	public ProfileController(ProfileDriverImpl profileDriver, PlaylistDriverImpl playlistDriver,
+			SongMetadataCache songMetadataCache, FavouritesDeltaBuffer favouritesDeltaBuffer,
+			SongServiceClient songServiceClient) {
 		this.profileDriver = profileDriver;
 		this.playlistDriver = playlistDriver;
+		this.songMetadataCache = songMetadataCache;
+		this.favouritesDeltaBuffer = favouritesDeltaBuffer;
+		this.songServiceClient = songServiceClient;
 	}
 
 	/**
@@ -99,109 +110,133 @@ public class ProfileController {
 	 * 
 	 * @param userName the userName property of the user in the Neo4j database
 	 * @param request the HttpServlet representing from where the request was sent
-	 * @return the response body for the request, which contains the status, path, and data (a map of the user's friends and their
-	 * liked songs) of the request
+	 * @return the response body for the request (in async mode, a future completed with it), which contains the status,
+	 * path, and data (a map of the user's friends and their liked songs) of the request
 	 */
 	@RequestMapping(value = "/getAllFriendFavouriteSongTitles/{userName}", method = RequestMethod.GET)
-	public @ResponseBody Map<String, Object> getAllFriendFavouriteSongTitles(
-			@PathVariable(KEY_USER_NAME) String userName, HttpServletRequest request) {
+	public @ResponseBody Object getAllFriendFavouriteSongTitles(@PathVariable(KEY_USER_NAME) String userName,
+			HttpServletRequest request) {
 
 		Map<String, Object> response = new HashMap<String, Object>();
 		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = profileDriver.getAllSongFriendsLike(userName);
-		DbQueryStatus finalDbQueryStatus;
+		// In async mode, neither the Neo4j query nor the calls to the Song Microservice hold on to this request's thread
+		CompletableFuture<DbQueryStatus> dbQueryStatus = asyncMode ? profileDriver.getAllSongFriendsLikeAsync(userName)
+				: CompletableFuture.completedFuture(profileDriver.getAllSongFriendsLike(userName));
+
+		CompletableFuture<Map<String, Object>> responseFuture = dbQueryStatus
+				.thenCompose(this::getFriendFavouriteSongTitles)
+				.thenApply(finalDbQueryStatus -> Utils.setResponseStatus(response,
+						finalDbQueryStatus.getdbQueryExecResult(), finalDbQueryStatus.getData()));
+
+		// Outside async mode the body is returned as it is, so the request doesn't go through an async dispatch
+		return asyncMode ? responseFuture : responseFuture.join();
+	}
+
+	/**
+	 * Finds the titles of the songs liked by each of the user's friends
+	 * 
+	 * @param dbQueryStatus the result of finding the songIds of the songs liked by each of the user's friends in Neo4j
+	 * @return a future completed with the DbQueryStatus of the operation performed (OK for success, non OK o/w),
+	 * containing a map of the user's friends and the titles of their liked songs
+	 */
+	private CompletableFuture<DbQueryStatus> getFriendFavouriteSongTitles(DbQueryStatus dbQueryStatus) {
 
 		// Checking if the Neo4j queries to find all the liked songs of the user's friends was successful
 		if (dbQueryStatus.getdbQueryExecResult().equals(DbQueryExecResult.QUERY_OK)) {
-			
-			// Storing the liked songs of the user's friends
-			Object data = dbQueryStatus.getData();
 
-			ObjectMapper mapper = new ObjectMapper();
-			
 			/* Storing the liked songs of the user's friends in a map where the friend's usernames are the keys
-			 * and the values are the lists of liked songs for each friend*/
-			Map<String, Object> friendsFavoriteSongTitles = mapper.convertValue(data, Map.class);
-			
-			// Iterator to iterate through friendsFavoriteSongTitles map in order to find the title of each liked song
-			Iterator<Entry<String, Object>> mapIterator = friendsFavoriteSongTitles.entrySet().iterator();
-			
-			// Keeps track of whether the call to the Song Microservice is successful
-			boolean goodCall = true;
-
-			// Iterating through the friendsFavoriteSongTitles map to find the titles of the liked songs of each friend
-			while (mapIterator.hasNext() && goodCall) {
-				
-				// Stores the current entry of the map
-				Map.Entry friendName = (Map.Entry) mapIterator.next();
-				
-				// Storing the list of songs liked by the current friend
-				String friendsSongIds = friendsFavoriteSongTitles.get(friendName.getKey()).toString();
-				friendsSongIds = friendsSongIds.substring(1, friendsSongIds.length() - 1);
-
-				if (!friendsSongIds.isEmpty()) {
-					// Converting friendsSongIds into an iterable array
-					String[] songIds = friendsSongIds.split(", ");
-					
-					// Stores the titles of each liked song
-					List<String> songTitles = new ArrayList<String>();
-					
-					// Iterating through each songId in songIds and making a request to the Song Microservice to find the song title
-					for (String songId : songIds) {
-						try {
-							String url = String.format("http://localhost:3001/getSongTitleById/%s", songId);
-
-							Request okRequest = new Request.Builder().url(url).method("GET", null).build();
-
-							Call call = client.newCall(okRequest);
-
-							Response responseGSTBI = null;
-
-							responseGSTBI = call.execute();
-							String getSongIdBody = responseGSTBI.body().string();
-
-							// Checking if a song title was found
-							if (mapper.readValue(getSongIdBody, Map.class).get("status").toString().equals("OK")) {
-								
-								// Adding the found song title to songTitles
-								songTitles.add(mapper.readValue(getSongIdBody, Map.class).get("data").toString());
-							} else {
-								if (!mapper.readValue(getSongIdBody, Map.class).get("status").toString()
-										.equals("NOT_FOUND")) {
-									goodCall = false;
-									break;
-								}
+			 * and the values are the lists of songIds liked by each friend*/
+			Map<String, List<String>> friendsSongIds = (Map<String, List<String>>) dbQueryStatus.getData();
+
+			// Storing the set of distinct songIds across all friends, so that a song liked by several friends is only looked up once
+			Set<String> uniqueSongIds = new HashSet<String>();
+
+			for (List<String> songIds : friendsSongIds.values()) {
+				uniqueSongIds.addAll(songIds);
+			}
+
+			// Finding the title of every distinct song in parallel, stored with the songIds as keys
+			return getSongTitles(uniqueSongIds).thenApply(titlesById -> {
+				DbQueryStatus finalDbQueryStatus;
+
+				// Checking if the calls to the Song Microservice were successful
+				if (titlesById != null) {
+
+					// Storing the titles of the songs liked by each friend, with the friend's usernames as keys
+					Map<String, List<String>> friendsFavoriteSongTitles = new LinkedHashMap<String, List<String>>();
+
+					// Fanning the found titles back out to each friend, skipping songs that no longer exist
+					for (Map.Entry<String, List<String>> friendSongs : friendsSongIds.entrySet()) {
+						List<String> songTitles = new ArrayList<String>(friendSongs.getValue().size());
+
+						for (String songId : friendSongs.getValue()) {
+							String songTitle = titlesById.get(songId);
+
+							if (songTitle != null) {
+								songTitles.add(songTitle);
 							}
-						} catch (Exception e) {
-							goodCall = false;
-							break;
 						}
+
+						// Adding the friend-songs, key-value pair to friendsFavoriteSongTitles 
+						friendsFavoriteSongTitles.put(friendSongs.getKey(), songTitles);
 					}
-					
-					// Adding the friend-songs, key-value pair to friendsFavoriteSongTitles 
-					friendsFavoriteSongTitles.put(friendName.getKey().toString(), songTitles);
+
+					finalDbQueryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+					finalDbQueryStatus.setData(friendsFavoriteSongTitles);
 				} else {
-					friendsFavoriteSongTitles.put(friendName.getKey().toString(), new String [0]);
+					finalDbQueryStatus = new DbQueryStatus("FAILED TO MAKE REQUEST TO MONGODB",
+							DbQueryExecResult.QUERY_ERROR_GENERIC);
 				}
-			}
 
-			if (goodCall) {
-				finalDbQueryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				finalDbQueryStatus.setData(friendsFavoriteSongTitles);
+				return finalDbQueryStatus;
+			});
+		}
+
+		return CompletableFuture.completedFuture(
+				new DbQueryStatus("FAILED TO MAKE REQUEST TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC));
+	}
+
+	/**
+	 * Finds the titles of the given songs, reading through the song metadata cache and asking the Song Microservice for
+	 * all the songs that are not cached at once
+	 * 
+	 * @param songIds the distinct songIds to find the titles of
+	 * @return a future completed with a map of the found song titles with the songIds as keys (songs that were not found
+	 * are left out), or with null if any of the calls to the Song Microservice failed
+	 */
+	private CompletableFuture<Map<String, String>> getSongTitles(Set<String> songIds) {
+
+		final Map<String, String> titlesById = new HashMap<String, String>();
+
+		// Songs deleted after this point are not stored in the cache when the lookup completes
+		final long lookupGeneration = songMetadataCache.getGeneration();
+
+		// Stores the songIds whose titles are not in the cache
+		List<String> uncachedSongIds = new ArrayList<String>();
+
+		for (String songId : songIds) {
+			String cachedTitle = songMetadataCache.getSongTitle(songId);
+
+			if (cachedTitle != null) {
+				titlesById.put(songId, cachedTitle);
 			} else {
-				finalDbQueryStatus = new DbQueryStatus("FAILED TO MAKE REQUEST TO MONGODB",
-						DbQueryExecResult.QUERY_ERROR_GENERIC);
+				uncachedSongIds.add(songId);
 			}
-		} else {
-			finalDbQueryStatus = new DbQueryStatus("FAILED TO MAKE REQUEST TO NEO4J",
-					DbQueryExecResult.QUERY_ERROR_GENERIC);
 		}
 
-		response = Utils.setResponseStatus(response, finalDbQueryStatus.getdbQueryExecResult(),
-				finalDbQueryStatus.getData());
+		return songServiceClient.getSongTitles(uncachedSongIds).thenApply(foundTitles -> {
+			if (foundTitles == null) {
+				return null;
+			}
 
-		return response;
+			for (Map.Entry<String, String> foundTitle : foundTitles.entrySet()) {
+				songMetadataCache.putSongTitle(foundTitle.getKey(), foundTitle.getValue(), lookupGeneration);
+				titlesById.put(foundTitle.getKey(), foundTitle.getValue());
+			}
+
+			return titlesById;
+		});
 	}
 
 	/**
@@ -250,61 +285,62 @@ public class ProfileController {
 	}
 
 	/**
-	 * Controls and handles the route for /likeSong/{userName}/{songId} (PUT), adding an "includes" relationship from the 
-	 * user's playlist to the given song in Neo4j
+	 * Controls and handles the route for /addSongs (PUT), adding a song node to the Neo4j database for each of the given
+	 * songs
 	 * 
-	 * @param userName the userName property of the user in the Neo4j database
-	 * @param songId the songId property of the song in the Neo4j database
+	 * @param songIds the songId properties of the new song nodes, as a JSON array
 	 * @param request the HttpServlet representing from where the request was sent
 	 * @return the response body for the request, which contains the status and path of the request
 	 */
-	@RequestMapping(value = "/likeSong/{userName}/{songId}", method = RequestMethod.PUT)
-	public @ResponseBody Map<String, Object> likeSong(@PathVariable(KEY_USER_NAME) String userName,
-			@PathVariable(KEY_SONGID) String songId, HttpServletRequest request) {
+	@RequestMapping(value = "/addSongs", method = RequestMethod.PUT)
+	public @ResponseBody Map<String, Object> addSongs(@RequestBody List<String> songIds,
+			HttpServletRequest request) {
 
 		Map<String, Object> response = new HashMap<String, Object>();
 		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = playlistDriver.likeSong(userName, songId);
-		
-		// Keeps track of whether the call to Song Microservice is successful
-		boolean goodCall = true;
-		
-		// Checking if the song was successfully liked in Neo4j
-		if (dbQueryStatus.getMessage().equals("OK")) {
-			
-			// Incrementing songAmountFavourites in MongoDB
-			try {
-				String urlParams = String.format("http://localhost:3001/updateSongFavouritesCount/%s", songId);
+		DbQueryStatus dbQueryStatus = playlistDriver.addSongs(songIds);
 
-				HttpUrl.Builder urlBuilder = HttpUrl.parse(urlParams).newBuilder();
-				urlBuilder.addQueryParameter("shouldDecrement", "false");
-				String url = urlBuilder.build().toString();
+		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
 
-				RequestBody body = RequestBody.create(new byte[0], null);
+		return response;
+	}
 
-				Request okRequest = new Request.Builder().url(url).method("PUT", body).build();
+	/**
+	 * Controls and handles the route for /likeSong/{userName}/{songId} (PUT), adding an "includes" relationship from the 
+	 * user's playlist to the given song in Neo4j
+	 * 
+	 * @param userName the userName property of the user in the Neo4j database
+	 * @param songId the songId property of the song in the Neo4j database
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request (in async mode, a future completed with it), which contains the status
+	 * and path of the request
+	 */
+	@RequestMapping(value = "/likeSong/{userName}/{songId}", method = RequestMethod.PUT)
+	public @ResponseBody Object likeSong(@PathVariable(KEY_USER_NAME) String userName,
+			@PathVariable(KEY_SONGID) String songId, HttpServletRequest request) {
 
-				Call call = client.newCall(okRequest);
+		String path = String.format("PUT %s", Utils.getUrl(request));
 
-				call.execute();
+		// In async mode, the Neo4j query doesn't hold on to this request's thread
+		CompletableFuture<DbQueryStatus> dbQueryStatus = asyncMode ? playlistDriver.likeSongAsync(userName, songId)
+				: CompletableFuture.completedFuture(playlistDriver.likeSong(userName, songId));
 
-			} catch (Exception e) {
-				goodCall = false;
-			}
-		}
+		CompletableFuture<RouteResponse> response = dbQueryStatus.thenApply(likeStatus -> {
 
-		if (!goodCall) {
-			dbQueryStatus = new DbQueryStatus("FAILED TO MAKE REQUEST TO MONGODB",
-					DbQueryExecResult.QUERY_ERROR_GENERIC);
-		}
+			// Checking if the song was successfully liked in Neo4j
+			if (likeStatus.getMessage().equals("OK")) {
 
-		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
+				// Buffering the increment of songAmountFavourites, which is sent to MongoDB with the next flush
+				favouritesDeltaBuffer.add(songId, 1);
+			}
 
-		return response;
+			return new RouteResponse(path, likeStatus.getdbQueryExecResult(), likeStatus.getData());
+		});
+
+		return asyncMode ? response : response.join();
 	}
 
-	
 	/**
 	 * Controls and handles the route for /unlikeSong/{userName}/{songId} (PUT), removing the "includes" relationship from the 
 	 * user's playlist to the given song in Neo4j
@@ -312,48 +348,86 @@ public class ProfileController {
 	 * @param userName the userName property of the user in the Neo4j database
 	 * @param songId the songId property of the song in the Neo4j database
 	 * @param request the HttpServlet representing from where the request was sent
-	 * @return the response body for the request, which contains the status and path of the request
+	 * @return the response body for the request (in async mode, a future completed with it), which contains the status
+	 * and path of the request
 	 */
 	@RequestMapping(value = "/unlikeSong/{userName}/{songId}", method = RequestMethod.PUT)
-	public @ResponseBody Map<String, Object> unlikeSong(@PathVariable(KEY_USER_NAME) String userName,
+	public @ResponseBody Object unlikeSong(@PathVariable(KEY_USER_NAME) String userName,
 			@PathVariable(KEY_SONGID) String songId, HttpServletRequest request) {
 
+		String path = String.format("PUT %s", Utils.getUrl(request));
+
+		// In async mode, the Neo4j query doesn't hold on to this request's thread
+		CompletableFuture<DbQueryStatus> dbQueryStatus = asyncMode ? playlistDriver.unlikeSongAsync(userName, songId)
+				: CompletableFuture.completedFuture(playlistDriver.unlikeSong(userName, songId));
+
+		CompletableFuture<RouteResponse> response = dbQueryStatus.thenApply(unlikeStatus -> {
+
+			// Checking if the song was successfully unliked in Neo4j
+			if (unlikeStatus.getdbQueryExecResult().equals(DbQueryExecResult.QUERY_OK)) {
+
+				// Buffering the decrement of songAmountFavourites, which is sent to MongoDB with the next flush
+				favouritesDeltaBuffer.add(songId, -1);
+			}
+
+			return new RouteResponse(path, unlikeStatus.getdbQueryExecResult(), unlikeStatus.getData());
+		});
+
+		return asyncMode ? response : response.join();
+	}
+
+	/**
+	 * Controls and handles the route for /deleteAllSongsFromDb/{songId} (PUT), removing the given song node and all its 
+	 * relationships in the Neo4j database. The song is hidden at once and deleted in the background, and the deletion
+	 * can be followed through /songDeletions/{operationId}
+	 * 
+	 * @param songId the songId property of the song in the Neo4j database
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, which contains the status, path and progress of the deletion
+	 */
+	@RequestMapping(value = "/deleteAllSongsFromDb/{songId}", method = RequestMethod.PUT)
+	public @ResponseBody Map<String, Object> deleteAllSongsFromDb(@PathVariable(KEY_SONGID) String songId,
+			HttpServletRequest request) {
+
 		Map<String, Object> response = new HashMap<String, Object>();
 		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = playlistDriver.unlikeSong(userName, songId);
-		
-		// Keeps track of whether the call to the Song Microservices is successful
-		boolean goodCall = true;
-		
-		// Checking if the song was successfully unliked in Neo4j
-		if (dbQueryStatus.getdbQueryExecResult().equals(DbQueryExecResult.QUERY_OK)) {
-			
-			// Decrementing songAmountFavourites in MongoDB
-			try {
-				String urlParams = String.format("http://localhost:3001/updateSongFavouritesCount/%s", songId);
+		// Evicting the song from the cache so its title is never served again once it has been deleted
+		songMetadataCache.evictSong(songId);
+		favouritesDeltaBuffer.discard(songId);
 
-				HttpUrl.Builder urlBuilder = HttpUrl.parse(urlParams).newBuilder();
-				urlBuilder.addQueryParameter("shouldDecrement", "true");
-				String url = urlBuilder.build().toString();
+		DbQueryStatus dbQueryStatus = playlistDriver.deleteSongFromDb(songId);
 
-				RequestBody body = RequestBody.create(new byte[0], null);
+		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
 
-				Request okRequest = new Request.Builder().url(url).method("PUT", body).build();
+		return response;
+	}
 
-				Call call = client.newCall(okRequest);
+	/**
+	 * Controls and handles the route for /deleteSongsFromDb (PUT), removing the given song nodes and all their 
+	 * relationships in the Neo4j database. The songs are hidden at once and deleted in the background, and the deletion
+	 * can be followed through /songDeletions/{operationId}
+	 * 
+	 * @param songIds the songId properties of the songs in the Neo4j database, as a JSON array
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, which contains the status, path and progress of the deletion
+	 */
+	@RequestMapping(value = "/deleteSongsFromDb", method = RequestMethod.PUT)
+	public @ResponseBody Map<String, Object> deleteSongsFromDb(@RequestBody List<String> songIds,
+			HttpServletRequest request) {
 
-				call.execute();
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
 
-			} catch (Exception e) {
-				goodCall = false;
+		// Evicting the songs from the cache so their titles are never served again once they have been deleted
+		if (songIds != null) {
+			for (String songId : songIds) {
+				songMetadataCache.evictSong(songId);
+				favouritesDeltaBuffer.discard(songId);
 			}
 		}
 
-		if (!goodCall) {
-			dbQueryStatus = new DbQueryStatus("FAILED TO MAKE REQUEST TO MONGODB",
-					DbQueryExecResult.QUERY_ERROR_GENERIC);
-		}
+		DbQueryStatus dbQueryStatus = playlistDriver.deleteSongsFromDb(songIds);
 
 		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
 
@@ -361,24 +435,25 @@ public class ProfileController {
 	}
 
 	/**
-	 * Controls and handles the route for /deleteAllSongsFromDb/{songId} (PUT), removing the given song node and all its 
-	 * relationships in the Neo4j database
+	 * Controls and handles the route for /songDeletions/{operationId} (GET), finding the progress of deleting songs and
+	 * their relationships from the Neo4j database
 	 * 
-	 * @param songId the songId property of the song in the Neo4j database
+	 * @param operationId the ID of the deletion, returned by the route that started it
 	 * @param request the HttpServlet representing from where the request was sent
-	 * @return the response body for the request, which contains the status and path of the request
+	 * @return the response body for the request, which contains the status, path and progress of the deletion
 	 */
-	@RequestMapping(value = "/deleteAllSongsFromDb/{songId}", method = RequestMethod.PUT)
-	public @ResponseBody Map<String, Object> deleteAllSongsFromDb(@PathVariable(KEY_SONGID) String songId,
+	@RequestMapping(value = "/songDeletions/{operationId}", method = RequestMethod.GET)
+	public @ResponseBody Map<String, Object> getSongDeletion(@PathVariable("operationId") String operationId,
 			HttpServletRequest request) {
 
 		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
+		response.put("path", String.format("GET %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = playlistDriver.deleteSongFromDb(songId);
+		DbQueryStatus dbQueryStatus = playlistDriver.getSongDeletion(operationId);
 
 		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
 
 		return response;
 	}
+
 }
\ No newline at end of file
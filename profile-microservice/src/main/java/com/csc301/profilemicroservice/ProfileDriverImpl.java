@@ -1,46 +1,33 @@
 package com.csc301.profilemicroservice;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import org.neo4j.driver.v1.Driver;
-import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.StatementResult;
-
-import org.json.*;
+import org.neo4j.driver.v1.StatementResultCursor;
+import org.neo4j.driver.v1.Values;
 
 import org.springframework.stereotype.Repository;
-import org.neo4j.driver.v1.Transaction;
 
 @Repository
 public class ProfileDriverImpl implements ProfileDriver {
 
-	Driver driver = ProfileMicroserviceApplication.driver;
-
-	/**
-	 *Initializes the Neo4j database by creating constraints (ensuring that the specified property will exist for a node) for the
-	 *profile node. Namely, the userName and password property, where userName is unique.
-	 */
-	public static void InitProfileDb() {
-		String queryStr;
+	/* Query to find each of the given user's friends along with the songs in their favourites playlist, in a single
+	 * round trip. It returns no rows if the user does not exist, and a single row with a null friend if the user has no
+	 * friends */
+	private static final String FRIENDS_SONGS_QUERY = "MATCH (p:profile {userName: $username}) "
+			+ "OPTIONAL MATCH (p)-[:follows]->(f:profile) "
+			+ "OPTIONAL MATCH (f)-[:created]->(pl:playlist)-[:includes]->(s:song) WHERE pl.plName = f.userName + '-favorites' "
+			+ "RETURN f.userName AS friendName, collect(s.songId) AS songIds";
 
-		try (Session session = ProfileMicroserviceApplication.driver.session()) {
-			try (Transaction trans = session.beginTransaction()) {
-				queryStr = "CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.userName)";
-				trans.run(queryStr);
+	// Runs the queries in managed transactions, which are retried on transient errors
+	private final Neo4jTransactions transactions;
 
-				queryStr = "CREATE CONSTRAINT ON (nProfile:profile) ASSERT exists(nProfile.password)";
-				trans.run(queryStr);
-
-				queryStr = "CREATE CONSTRAINT ON (nProfile:profile) ASSERT nProfile.userName IS UNIQUE";
-				trans.run(queryStr);
-
-				trans.success();
-			}
-			session.close();
-		}
+	public ProfileDriverImpl(Neo4jTransactions transactions) {
+		this.transactions = transactions;
 	}
 
 	/**
@@ -67,8 +54,8 @@ public class ProfileDriverImpl implements ProfileDriver {
 			// Keeps track of whether a user with the given username already exists in Neo4j
 			boolean alreadyExists = false;
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
+			try {
+				alreadyExists = transactions.write("createUserProfile", trans -> {
 					Map<String, Object> params = new HashMap<String, Object>();
 					params.put("username", userName);
 					
@@ -77,32 +64,30 @@ public class ProfileDriverImpl implements ProfileDriver {
 					StatementResult result = trans.run(queryStr, params);
 					
 					// Checks if a user already exists in Neo4j with the given username
-					if (!result.hasNext()) {
-						params.put("fullname", fullName);
-						params.put("password", password);
-						params.put("playlistName", userName + "-favorites");
-						
-						// Query to create a profile node in Neo4j with the given user information
-						queryStr = "CREATE (p:profile {userName: $username, fullName: $fullname, password: $password})";
-						trans.run(queryStr, params);
-						
-						// Query to create a playlist node in Neo4j for the new user
-						queryStr = "MERGE (p:playlist {plName: $playlistName})";
-						trans.run(queryStr, params);
-
-						// Query to create a relationship between the user and their playlist
-						queryStr = "MATCH (p:profile), (pl:playlist) WHERE p.userName = $username AND pl.plName = $playlistName CREATE (p)-[:created]->(pl)";
-						trans.run(queryStr, params);
-					} else {
-						alreadyExists = true;
+					if (result.hasNext()) {
+						trans.success();
+						return true;
 					}
 
-					trans.success();
+					params.put("fullname", fullName);
+					params.put("password", password);
+					params.put("playlistName", userName + "-favorites");
+					
+					// Query to create a profile node in Neo4j with the given user information
+					queryStr = "CREATE (p:profile {userName: $username, fullName: $fullname, password: $password})";
+					trans.run(queryStr, params).consume();
+					
+					// Query to create a playlist node in Neo4j for the new user
+					queryStr = "MERGE (p:playlist {plName: $playlistName})";
+					trans.run(queryStr, params).consume();
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
+					// Query to create a relationship between the user and their playlist
+					queryStr = "MATCH (p:profile), (pl:playlist) WHERE p.userName = $username AND pl.plName = $playlistName CREATE (p)-[:created]->(pl)";
+					trans.run(queryStr, params).consume();
+
+					trans.success();
+					return false;
+				});
 			} catch (Exception e) {
 				goodConnection = false;
 			}
@@ -124,7 +109,9 @@ public class ProfileDriverImpl implements ProfileDriver {
 	}
 
 	/**
-	 * Creates a direct relationship from the given user to its friend, labeled, "follows", in the Neo4j database
+	 * Creates a direct relationship from the given user to its friend, labeled, "follows", in the Neo4j database. Checking
+	 * that both users exist, checking whether the user already follows the friend, and creating the relationship are all
+	 * done by a single query.
 	 * 
 	 * @param userName the userName property of the user in the Neo4j database
 	 * @param frndUserName the userName property of the user's friend in the Neo4j database
@@ -137,62 +124,54 @@ public class ProfileDriverImpl implements ProfileDriver {
 		// Keeps track of whether the connection to Neo4j is successful
 		boolean goodConnection = true;
 		
-		// Keeps track of the given user already follows the friend
-		boolean alreadyFollows = true;
+		// Keep track of whether both users exist, and whether the given user already follows the friend
+		boolean usersFound = false;
+		boolean alreadyFollows = false;
 
 		// Checks if the parameters are empty
 		if (userName.isEmpty() || frndUserName.isEmpty()) {
 			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
-			
-			// Checks if any of the given users exist in Neo4j
-			if (!userExists(userName) || !userExists(frndUserName)) {
-				return new DbQueryStatus("ONE OR MORE USERS NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
-			
-			// Checking if the given usernames are the same, which would mean the user is trying to follow themselves
-			if (userName.equals(frndUserName)) {
-				return new DbQueryStatus("CAN'T ADD YOURSELF", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
+			try {
+				Record result = transactions.write("followFriend", trans -> {
 					Map<String, Object> params = new HashMap<String, Object>();
 					params.put("username", userName);
 					params.put("friendUsername", frndUserName);
 					
-					// Query to check if the given user already follows the friend
-					String queryStr = "RETURN EXISTS ((:profile {userName: $username})-[:follows]->(:profile {userName: $friendUsername}))";
-					StatementResult result = trans.run(queryStr, params);
-					
-					// Checks if the given user already follows the friend
-					if (result.next().get(0).toString().equals("FALSE")) {
-						
-						// Query to check create the relationship to have the given user follow the friend
-						queryStr = "MATCH (p1:profile), (p2:profile) WHERE p1.userName = $username AND p2.userName = $friendUsername MERGE (p1)-[:follows]->(p2)";
-						trans.run(queryStr, params);
-						alreadyFollows = false;
-					}
+					/* Query to find both users, and to have the given user follow the friend unless they already do or are
+					 * the same user */
+					String queryStr = "OPTIONAL MATCH (p1:profile {userName: $username}) "
+							+ "OPTIONAL MATCH (p2:profile {userName: $friendUsername}) "
+							+ "OPTIONAL MATCH (p1)-[f:follows]->(p2) "
+							+ "WITH p1, p2, f IS NOT NULL AS alreadyFollows "
+							+ "FOREACH (ignored IN CASE WHEN p1 IS NOT NULL AND p2 IS NOT NULL AND p1 <> p2 AND NOT alreadyFollows THEN [1] ELSE [] END | "
+							+ "MERGE (p1)-[:follows]->(p2)) "
+							+ "RETURN p1 IS NOT NULL AND p2 IS NOT NULL AS usersFound, alreadyFollows";
+					Record record = trans.run(queryStr, params).single();
 
 					trans.success();
+					return record;
+				});
+
+				usersFound = result.get("usersFound").asBoolean();
+				alreadyFollows = result.get("alreadyFollows").asBoolean();
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
 			} catch (Exception e) {
 				goodConnection = false;
 			}
 
-			if (goodConnection) {
-				if (!alreadyFollows) {
-					queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				} else {
-					queryStatus = new DbQueryStatus("ALREADY FOLLOWING", DbQueryExecResult.QUERY_ERROR_GENERIC);
-				}
-
-			} else {
+			if (!goodConnection) {
 				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else if (!usersFound) {
+				queryStatus = new DbQueryStatus("ONE OR MORE USERS NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else if (userName.equals(frndUserName)) {
+				// The given usernames are the same, which means the user is trying to follow themselves
+				queryStatus = new DbQueryStatus("CAN'T ADD YOURSELF", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else if (alreadyFollows) {
+				queryStatus = new DbQueryStatus("ALREADY FOLLOWING", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else {
+				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 			}
 		}
 
@@ -200,7 +179,8 @@ public class ProfileDriverImpl implements ProfileDriver {
 	}
 
 	/**
-	 * Removes the direct relationship from the given user to its friend, labeled, "follows", in the Neo4j database
+	 * Removes the direct relationship from the given user to its friend, labeled, "follows", in the Neo4j database.
+	 * Checking that both users exist and removing the relationship are done by a single query.
 	 * 
 	 * @param userName the userName property of the user in the Neo4j database
 	 * @param frndUserName the userName property of the user's friend in the Neo4j database
@@ -213,57 +193,49 @@ public class ProfileDriverImpl implements ProfileDriver {
 		// Keeps track of whether the connection to Neo4j is successful 
 		boolean goodConnection = true;
 		
-		// Keeps track of whether the given user is already following the friend
+		// Keep track of whether both users exist, and whether the given user was following the friend
+		boolean usersFound = false;
 		boolean alreadyFollows = false;
 
 		// Checks if any of the parameters are empty
 		if (userName.isEmpty() || frndUserName.isEmpty()) {
 			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
-			
-			// Checks if any of the given users exist in Neo4j
-			if (!userExists(userName) || !userExists(frndUserName)) {
-				return new DbQueryStatus("ONE OR MORE USERS NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
 
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
+			try {
+				Record result = transactions.write("unfollowFriend", trans -> {
 					Map<String, Object> params = new HashMap<String, Object>();
 					params.put("username", userName);
 					params.put("friendUsername", frndUserName);
 					
-					// Query to check if the user already follows the friend
-					String queryStr = "RETURN EXISTS ((:profile {userName: $username})-[:follows]->(:profile {userName: $friendUsername}))";
-					StatementResult result = trans.run(queryStr, params);
-					
-					// Checks if the user already follows the friend
-					if (result.next().get(0).toString().equals("TRUE")) {
-						
-						// Query to remove the user's follow relationship with the friend
-						queryStr = "MATCH (:profile {userName: $username})-[f:follows]->(:profile {userName: $friendUsername}) DELETE f";
-						trans.run(queryStr, params);
-						alreadyFollows = true;
-					}
+					// Query to find both users, and to remove the user's follow relationship with the friend if it exists
+					String queryStr = "OPTIONAL MATCH (p1:profile {userName: $username}) "
+							+ "OPTIONAL MATCH (p2:profile {userName: $friendUsername}) "
+							+ "OPTIONAL MATCH (p1)-[f:follows]->(p2) "
+							+ "WITH p1, p2, f, f IS NOT NULL AS alreadyFollows "
+							+ "DELETE f "
+							+ "RETURN p1 IS NOT NULL AND p2 IS NOT NULL AS usersFound, alreadyFollows";
+					Record record = trans.run(queryStr, params).single();
 
 					trans.success();
+					return record;
+				});
+
+				usersFound = result.get("usersFound").asBoolean();
+				alreadyFollows = result.get("alreadyFollows").asBoolean();
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
 			} catch (Exception e) {
 				goodConnection = false;
 			}
 
-			if (goodConnection) {
-				if (alreadyFollows) {
-					queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				} else {
-					queryStatus = new DbQueryStatus("NOT EVEN FOLLOWING USER", DbQueryExecResult.QUERY_ERROR_GENERIC);
-				}
-
-			} else {
+			if (!goodConnection) {
 				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else if (!usersFound) {
+				queryStatus = new DbQueryStatus("ONE OR MORE USERS NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else if (!alreadyFollows) {
+				queryStatus = new DbQueryStatus("NOT EVEN FOLLOWING USER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else {
+				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 			}
 		}
 
@@ -280,125 +252,95 @@ public class ProfileDriverImpl implements ProfileDriver {
 	@Override
 	public DbQueryStatus getAllSongFriendsLike(String userName) {
 
-		DbQueryStatus queryStatus;
-		
-		// Keeps track of whether the connection to Neo4j is successful
-		boolean goodConnection = true;
-		
 		// Checks if the parameter is empty
 		if (userName.isEmpty()) {
-			queryStatus = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
-		} else {
-			
-			// Checks if a user with the given username exists in Neo4j
-			if (!userExists(userName)) {
-				return new DbQueryStatus("USER NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
-			
-			/* Stores the liked songs of the given user's friends with key-value pairs, where the keys are the
-		 	usernames of friends, and the values are lists containing the liked songs for each friend*/
-			JSONObject allSongsFriendsLike = new JSONObject();
-
-			try (Session session = ProfileMicroserviceApplication.driver.session()) {
-				try (Transaction trans = session.beginTransaction()) {
-					Map<String, Object> params = new HashMap<String, Object>();
-					params.put("username", userName);
-					
-					
-					// Query to find all the given user's friends
-					String queryStr = "MATCH (p:profile)-[:follows]->(f:profile) WHERE p.userName = $username RETURN f.userName";
-					StatementResult result = trans.run(queryStr, params);
-					
-					// Stores the names of the user's friends
-					List<String> friends = new ArrayList<String>();
-					
-					// A temporary list to store the current friend's liked songs
-					List<String> songs = new ArrayList<String>();
-					
-					// Filling the friends list with the user's friends
-					while (result.hasNext()) {
-						friends.add(result.next().get(0).toString());
-					}
-					
-					// Filling allSongsFriendsLike with the appropriate key-value pairing
-					for (String friendName : friends) {
-						params.put("friendName", friendName.replaceAll("\"", ""));
-						params.put("friendPlaylist", (friendName + "-favorites").replaceAll("\"", ""));
-						
-						// Query to find the liked songs of each friend
-						queryStr = "MATCH (p:profile)-[:created]->(pl:playlist) WHERE p.userName = $friendName AND pl.plName = $friendPlaylist MATCH (pl:playlist)-[:includes]->(s:song) RETURN s.songId";
-
-						result = trans.run(queryStr, params);
-						
-						// Filling the temporary song array with the current friend's songs
-						while (result.hasNext()) {
-							songs.add(result.next().get(0).toString().replaceAll("\"", ""));
-						}
-						
-						// Adding a friend-songs, key-value pair to allSongsFriendsLike
-						allSongsFriendsLike.put(friendName.replaceAll("\"", ""), songs);
-						
-						// Clearing the temporary song list to be used for the next friend
-						songs.clear();
-
-					}
+			return new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
 
-					trans.success();
+		try {
+			List<Record> result = transactions.read("getAllSongFriendsLike", trans -> {
+				List<Record> records = trans.run(FRIENDS_SONGS_QUERY, userParams(userName)).list();
 
-				} catch (Exception e) {
-					goodConnection = false;
-				}
-				session.close();
+				trans.success();
+				return records;
+			});
 
-			} catch (Exception e) {
-				goodConnection = false;
-			}
+			return friendsSongsStatus(result);
+		} catch (Exception e) {
+			return new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
+	}
 
-			if (goodConnection) {
-				queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-				queryStatus.setData(allSongsFriendsLike.toMap());
-			} else {
-				queryStatus = new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC);
-			}
+	/**
+	 * Finds all the liked songs for each of the given user's friends the same way as getAllSongFriendsLike, without
+	 * blocking the calling thread while the query runs
+	 * 
+	 * @param userName the userName property of the user in the Neo4j database
+	 * @return a future completed with the DbQueryStatus of the operation performed (OK for success, non OK o/w),
+	 * containing a map of each of the user's friends' liked songs and the songs they've liked
+	 */
+	public CompletableFuture<DbQueryStatus> getAllSongFriendsLikeAsync(String userName) {
 
+		// Checks if the parameter is empty
+		if (userName.isEmpty()) {
+			return CompletableFuture.completedFuture(
+					new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC));
 		}
 
-		return queryStatus;
+		return transactions.readAsync("getAllSongFriendsLike",
+				trans -> trans.runAsync(FRIENDS_SONGS_QUERY, userParams(userName))
+						.thenCompose(StatementResultCursor::listAsync))
+				.thenApply(this::friendsSongsStatus)
+				.exceptionally(e -> new DbQueryStatus("FAILED TO CONNECT TO NEO4J", DbQueryExecResult.QUERY_ERROR_GENERIC))
+				.toCompletableFuture();
 	}
 
 	/**********************
 	 *  HELPER FUNCTIONS  *
 	 *********************/
-	
+
 	/**
-	 * Checks if a user exists in the Neo4j database
+	 * Builds the parameters of the query that finds the songs liked by the user's friends
 	 * 
-	 * @param username the userName property of the profile node in the Neo4j database
-	 * @return true, if the user exists, false otherwise
+	 * @param userName the userName property of the user in the Neo4j database
+	 * @return the parameters of the query
 	 */
-	public boolean userExists(String username) {
-		boolean exists = false;
+	private static Map<String, Object> userParams(String userName) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("username", userName);
 
-		try (Session session = ProfileMicroserviceApplication.driver.session()) {
-			try (Transaction trans = session.beginTransaction()) {
-				Map<String, Object> params = new HashMap<String, Object>();
-				params.put("username", username);
+		return params;
+	}
 
-				String queryStr = "MATCH (p:profile) WHERE p.userName = $username return p";
-				StatementResult result = trans.run(queryStr, params);
+	/**
+	 * Collects the rows returned by FRIENDS_SONGS_QUERY into the liked songs of each friend
+	 * 
+	 * @param result the records returned by the query
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing a map of each of the
+	 * user's friends and the songs they've liked
+	 */
+	private DbQueryStatus friendsSongsStatus(List<Record> result) {
 
-				if (result.hasNext()) {
-					exists = true;
-				}
+		// The query returns no rows if the user does not exist
+		if (result.isEmpty()) {
+			return new DbQueryStatus("USER NON-EXISTENT", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		}
 
-				trans.success();
+		/* Stores the liked songs of the given user's friends with key-value pairs, where the keys are the
+		 usernames of friends, and the values are lists containing the liked songs for each friend*/
+		Map<String, List<String>> allSongsFriendsLike = new HashMap<String, List<String>>();
 
-			} catch (Exception e) {
+		// Filling allSongsFriendsLike with the appropriate key-value pairing
+		for (Record record : result) {
+			if (!record.get("friendName").isNull()) {
+				allSongsFriendsLike.put(record.get("friendName").asString(),
+						record.get("songIds").asList(Values.ofString()));
 			}
-			session.close();
-		} catch (Exception e) {
 		}
 
-		return exists;
+		DbQueryStatus queryStatus = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		queryStatus.setData(allSongsFriendsLike);
+
+		return queryStatus;
 	}
 }
@@ -1,26 +1,31 @@
 package com.csc301.profilemicroservice;
 
+import org.neo4j.driver.internal.metrics.spi.Metrics;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.neo4j.driver.v1.AuthTokens;
-import org.neo4j.driver.v1.Driver;
-import org.neo4j.driver.v1.GraphDatabase;
-import org.neo4j.driver.v1.Session;
-import org.neo4j.driver.v1.Transaction;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ProfileMicroserviceApplication {
-	public static String dbUri = "bolt://localhost:7687";
-    public static Driver driver = GraphDatabase.driver(dbUri, AuthTokens.basic("neo4j","1234"));
 
-    
 	public static void main(String[] args) {
-		SpringApplication.run(ProfileMicroserviceApplication.class, args);
-		
-		ProfileDriverImpl.InitProfileDb();
-		PlaylistDriverImpl.InitPlaylistDb();
+		SpringApplication application = new SpringApplication(ProfileMicroserviceApplication.class);
+
+		// The Neo4j driver only records the usage of its connection pool when this JVM-wide switch is set before it is
+		// created, so it is set once here, as soon as neo4j.metrics.enabled can be read, rather than by a bean
+		application.addListeners(new ApplicationListener<ApplicationEnvironmentPreparedEvent>() {
+			@Override
+			public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+				if (event.getEnvironment().getProperty("neo4j.metrics.enabled", Boolean.class, false)) {
+					System.setProperty(Metrics.DRIVER_METRICS_ENABLED_KEY, "true");
+				}
+			}
+		});
+		application.run(args);
 		
 		System.out.println("Profile service is running on port 3002");
 	}
 }
-
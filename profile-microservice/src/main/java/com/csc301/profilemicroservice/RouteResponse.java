@@ -0,0 +1,61 @@
+package com.csc301.profilemicroservice;
+
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The response body of this service's busiest routes, which serializes to the same JSON as Utils.setResponseStatus, as
+ * the Song Microservice's RouteResponse does.
+ */
+@JsonPropertyOrder({ "path", "data", "status" })
+public class RouteResponse {
+
+	private static final String STATUS_OK = HttpStatus.OK.name();
+	private static final String STATUS_NOT_FOUND = HttpStatus.NOT_FOUND.name();
+	private static final String STATUS_INTERNAL_SERVER_ERROR = HttpStatus.INTERNAL_SERVER_ERROR.name();
+
+	private final String path;
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final Object data;
+
+	private final String status;
+
+	/**
+	 * @param path the method and URL the request was sent to
+	 * @param dbQueryExecResult the result of the operation performed for the request
+	 * @param data the data found by the operation, which is only sent back if it succeeded
+	 */
+	public RouteResponse(String path, DbQueryExecResult dbQueryExecResult, Object data) {
+		this.path = path;
+
+		switch (dbQueryExecResult) {
+		case QUERY_OK:
+			this.status = STATUS_OK;
+			this.data = data;
+			break;
+		case QUERY_ERROR_NOT_FOUND:
+			this.status = STATUS_NOT_FOUND;
+			this.data = null;
+			break;
+		default:
+			this.status = STATUS_INTERNAL_SERVER_ERROR;
+			this.data = null;
+			break;
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public Object getData() {
+		return data;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,258 @@
+package com.csc301.profilemicroservice;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.neo4j.driver.v1.Record;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Deletes song nodes from the Neo4j database in the background. The songs are hidden from every query straight away by
+ * relabelling them from song to deletedSong, and their relationships are then deleted in batches of batchSize, one
+ * transaction per batch, so that deleting a song liked by millions of users never builds one huge transaction. A deletion
+ * that fails part way is retried with exponential backoff, up to maxAttempts times, and deletions that were interrupted
+ * by a restart or ran out of attempts are picked up again once the service is ready.
+ */
+@Component
+public class SongDeletions {
+
+	public static final String STATUS_RUNNING = "RUNNING";
+	public static final String STATUS_DONE = "DONE";
+	public static final String STATUS_FAILED = "FAILED";
+
+	private final Neo4jTransactions transactions;
+
+	// The number of relationships deleted per transaction
+	private final int batchSize;
+
+	// The number of times a deletion is attempted before it is left for the next restart
+	private final int maxAttempts;
+
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	// The latest progress of each deletion, with the operation IDs as keys
+	private final Cache<String, SongDeletion> deletions;
+
+	// Deletions are run one at a time, so they never compete with each other for locks, and retries wait on it
+	private final ScheduledExecutorService deletionExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	public SongDeletions(Neo4jTransactions transactions, @Value("${songDeletion.batchSize:10000}") int batchSize,
+			@Value("${songDeletion.retainSeconds:3600}") long retainSeconds,
+			@Value("${songDeletion.maxAttempts:10}") int maxAttempts,
+			@Value("${songDeletion.initialBackoffMillis:1000}") long initialBackoffMillis,
+			@Value("${songDeletion.maxBackoffMillis:60000}") long maxBackoffMillis) {
+		this.transactions = transactions;
+		this.batchSize = batchSize;
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+
+		// The progress of a deletion is kept for retainSeconds after it was last updated
+		this.deletions = Caffeine.newBuilder().expireAfterWrite(retainSeconds, TimeUnit.SECONDS).build();
+	}
+
+	/**
+	 * Hides the song nodes with the given songIds, and starts deleting them and their relationships in the background.
+	 * Songs that don't exist are skipped.
+	 *
+	 * @param songIds the songId properties of the song nodes in the Neo4j database
+	 * @return the progress of the deletion, which is already done if none of the songs exist
+	 */
+	public SongDeletion start(List<String> songIds) {
+		String operationId = UUID.randomUUID().toString();
+
+		long songsHidden = transactions.write("hideSongs", trans -> {
+			Map<String, Object> params = new HashMap<String, Object>();
+			params.put("songIds", songIds);
+			params.put("operationId", operationId);
+
+			// Query to hide the songs from every other query, marking them with the operation deleting them
+			String queryStr = "UNWIND $songIds AS songId MATCH (s:song {songId: songId}) "
+					+ "REMOVE s:song SET s:deletedSong, s.deletionId = $operationId RETURN count(s) AS songsHidden";
+			long hidden = trans.run(queryStr, params).single().get("songsHidden").asLong();
+
+			trans.success();
+			return hidden;
+		});
+
+		SongDeletion deletion = new SongDeletion(operationId, songsHidden == 0 ? STATUS_DONE : STATUS_RUNNING, songsHidden, 0);
+		deletions.put(operationId, deletion);
+
+		if (songsHidden > 0) {
+			deletionExecutor.execute(() -> delete(deletion, 0));
+		}
+
+		return deletion;
+	}
+
+	/**
+	 * Finds the progress of the given deletion
+	 *
+	 * @param operationId the ID of the deletion
+	 * @return the progress of the deletion, or null if there is no such deletion
+	 */
+	public SongDeletion getDeletion(String operationId) {
+		return deletions.getIfPresent(operationId);
+	}
+
+	/**
+	 * Resumes the deletions of songs that are still hidden, which were interrupted by the service stopping
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void resumeDeletions() {
+		try {
+			List<Record> hiddenSongs = transactions.read("findHiddenSongs", trans -> {
+				String queryStr = "MATCH (s:deletedSong) RETURN s.deletionId AS operationId, count(s) AS songsHidden";
+				List<Record> records = trans.run(queryStr).list();
+
+				trans.success();
+				return records;
+			});
+
+			for (Record hidden : hiddenSongs) {
+				SongDeletion deletion = new SongDeletion(hidden.get("operationId").asString(), STATUS_RUNNING,
+						hidden.get("songsHidden").asLong(), 0);
+				deletions.put(deletion.getOperationId(), deletion);
+				deletionExecutor.execute(() -> delete(deletion, 0));
+			}
+		} catch (Exception e) {
+			// The hidden songs stay hidden, and are deleted the next time the service starts
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		// Any deletion still running is resumed when the service starts again
+		deletionExecutor.shutdownNow();
+	}
+
+	/**
+	 * Deletes the relationships of the hidden songs in batches, and then the songs themselves. If a transaction fails,
+	 * the deletion is scheduled to carry on from where it stopped after a backoff, unless it has run out of attempts.
+	 *
+	 * @param deletion the deletion that hid the songs, with the progress made by earlier attempts
+	 * @param attempts the number of times the deletion has already failed
+	 */
+	private void delete(SongDeletion deletion, int attempts) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("operationId", deletion.getOperationId());
+		params.put("batchSize", batchSize);
+
+		long relationshipsDeleted = deletion.getRelationshipsDeleted();
+
+		try {
+			long deleted;
+			do {
+				deleted = transactions.write("deleteSongRelationships", trans -> {
+					// Query to delete the next batch of the hidden songs' relationships
+					String queryStr = "MATCH (s:deletedSong {deletionId: $operationId})-[r]-() WITH DISTINCT r LIMIT $batchSize "
+							+ "DELETE r RETURN count(r) AS deleted";
+					long batch = trans.run(queryStr, params).single().get("deleted").asLong();
+
+					trans.success();
+					return batch;
+				});
+
+				relationshipsDeleted += deleted;
+				deletions.put(deletion.getOperationId(), deletion.withProgress(STATUS_RUNNING, relationshipsDeleted));
+			} while (deleted > 0 && !Thread.currentThread().isInterrupted());
+
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+
+			transactions.write("deleteHiddenSongs", trans -> {
+				// Query to delete the hidden songs, which have no relationships left
+				String queryStr = "MATCH (s:deletedSong {deletionId: $operationId}) DETACH DELETE s";
+				trans.run(queryStr, params).consume();
+
+				trans.success();
+				return null;
+			});
+
+			deletions.put(deletion.getOperationId(), deletion.withProgress(STATUS_DONE, relationshipsDeleted));
+		} catch (Exception e) {
+			SongDeletion progress = deletion.withProgress(STATUS_RUNNING, relationshipsDeleted);
+
+			if (attempts + 1 < maxAttempts) {
+				try {
+					deletions.put(deletion.getOperationId(), progress);
+					deletionExecutor.schedule(() -> delete(progress, attempts + 1), backoff(attempts),
+							TimeUnit.MILLISECONDS);
+					return;
+				} catch (RejectedExecutionException rejected) {
+					// The service is stopping, so the deletion is left for the next time it starts
+				}
+			}
+
+			// The songs stay hidden, and their deletion is resumed the next time the service starts
+			deletions.put(deletion.getOperationId(), deletion.withProgress(STATUS_FAILED, relationshipsDeleted));
+		}
+	}
+
+	/**
+	 * Finds how long to wait before retrying a deletion, picked at random from the upper half of an exponentially
+	 * growing window so that retries don't line up with whatever made the last attempt fail
+	 *
+	 * @param attempts the number of times the deletion has already failed
+	 * @return the number of milliseconds to wait before the next attempt
+	 */
+	private long backoff(int attempts) {
+		long window = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts, 20));
+
+		return window / 2 + ThreadLocalRandom.current().nextLong(window / 2 + 1);
+	}
+
+	/**
+	 * The progress of deleting a group of songs
+	 */
+	public static class SongDeletion {
+		private final String operationId;
+		private final String status;
+		private final long songsDeleted;
+		private final long relationshipsDeleted;
+
+		private SongDeletion(String operationId, String status, long songsDeleted, long relationshipsDeleted) {
+			this.operationId = operationId;
+			this.status = status;
+			this.songsDeleted = songsDeleted;
+			this.relationshipsDeleted = relationshipsDeleted;
+		}
+
+		private SongDeletion withProgress(String status, long relationshipsDeleted) {
+			return new SongDeletion(operationId, status, songsDeleted, relationshipsDeleted);
+		}
+
+		public String getOperationId() {
+			return operationId;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public long getSongsDeleted() {
+			return songsDeleted;
+		}
+
+		public long getRelationshipsDeleted() {
+			return relationshipsDeleted;
+		}
+	}
+}
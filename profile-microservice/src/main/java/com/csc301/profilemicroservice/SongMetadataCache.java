@@ -0,0 +1,110 @@
+package com.csc301.profilemicroservice;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Component
+public class SongMetadataCache {
+
+	// Song titles found through the Song Microservice, with the songIds as keys
+	private final Cache<String, String> songTitles;
+
+	// The generation each recently deleted song was evicted in, with the songIds as keys
+	private final Cache<String, Long> evictions;
+
+	// Counts the evictions, so that a lookup can tell whether a song was evicted after it started
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Creates a size-bounded cache of song titles, evicted with W-TinyLFU once it holds maximumSize entries, and expired
+	 * expireAfterWriteSeconds after being stored. Hit, miss and eviction statistics are published as the "songTitles"
+	 * cache metrics. Deleted songs are remembered for evictionRetainSeconds, which must be longer than any lookup takes,
+	 * so that a lookup started before a song was deleted can't store it again.
+	 *
+	 * @param maximumSize the maximum number of song titles held in the cache
+	 * @param expireAfterWriteSeconds the number of seconds a song title stays in the cache after being stored
+	 * @param evictionRetainSeconds the number of seconds a deleted song is remembered for
+	 * @param meterRegistry the registry the cache statistics are published to
+	 */
+	public SongMetadataCache(@Value("${songCache.maximumSize:100000}") long maximumSize,
+			@Value("${songCache.expireAfterWriteSeconds:3600}") long expireAfterWriteSeconds,
+			@Value("${songCache.evictionRetainSeconds:60}") long evictionRetainSeconds,
+			MeterRegistry meterRegistry) {
+
+		this.songTitles = Caffeine.newBuilder().maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS).recordStats().build();
+		this.evictions = Caffeine.newBuilder().expireAfterWrite(evictionRetainSeconds, TimeUnit.SECONDS).build();
+
+		CaffeineCacheMetrics.monitor(meterRegistry, songTitles, "songTitles");
+	}
+
+	/**
+	 * Finds the title of the given song in the cache
+	 *
+	 * @param songId the songId of the song
+	 * @return the title of the song, or null if it is not in the cache
+	 */
+	public String getSongTitle(String songId) {
+		return songTitles.getIfPresent(songId);
+	}
+
+	/**
+	 * @return the current generation, to be passed to putSongTitle once a lookup started now completes
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Stores the title of the given song in the cache, unless the song was evicted after the lookup that found it
+	 * started. The eviction is checked again once the title is stored, as it may have happened in between.
+	 *
+	 * @param songId the songId of the song
+	 * @param songTitle the title of the song
+	 * @param lookupGeneration the generation when the lookup that found the title started
+	 */
+	public void putSongTitle(String songId, String songTitle, long lookupGeneration) {
+		if (evictedSince(songId, lookupGeneration)) {
+			return;
+		}
+
+		songTitles.put(songId, songTitle);
+
+		if (evictedSince(songId, lookupGeneration)) {
+			songTitles.invalidate(songId);
+		}
+	}
+
+	/**
+	 * Removes the given song from the cache, so that it is never served after being deleted
+	 *
+	 * @param songId the songId of the song
+	 */
+	public void evictSong(String songId) {
+		evictions.put(songId, generation.incrementAndGet());
+		songTitles.invalidate(songId);
+	}
+
+	private boolean evictedSince(String songId, long lookupGeneration) {
+		Long evictedIn = evictions.getIfPresent(songId);
+
+		return evictedIn != null && evictedIn > lookupGeneration;
+	}
+
+	/**
+	 * @return the hit, miss and eviction statistics of the cache
+	 */
+	public CacheStats getStats() {
+		return songTitles.stats();
+	}
+}
@@ -0,0 +1,231 @@
+package com.csc301.profilemicroservice;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+@Component
+public class SongServiceClient {
+
+	private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+	private final OkHttpClient client;
+
+	// Caps the number of operations waiting on the Song Microservice at once
+	private final Bulkhead bulkhead;
+
+	// Reused for every call, as they are immutable and thread-safe, unlike building them from the ObjectMapper each time
+	private final ObjectWriter favouritesDeltasWriter;
+	private final ObjectWriter songIdsWriter;
+	private final ObjectReader statusReader;
+	private final ObjectReader titlesReader;
+
+	// The base URL of the Song Microservice
+	private final String songServiceUrl;
+
+	// The maximum number of songIds sent in each request to /getSongTitlesByIds
+	private final int titleBatchSize;
+
+	// The maximum number of requests to /getSongTitlesByIds in flight at once for each call to getSongTitles
+	private final int titleLookupConcurrency;
+
+	public SongServiceClient(ObjectMapper mapper,
+			@Value("${songService.url:http://localhost:3001}") String songServiceUrl,
+			@Value("${songService.titleBatchSize:500}") int titleBatchSize,
+			@Value("${songService.titleLookupConcurrency:8}") int titleLookupConcurrency,
+			OkHttpClient songServiceHttpClient, Bulkhead songServiceBulkhead) {
+		this.client = songServiceHttpClient;
+		this.bulkhead = songServiceBulkhead;
+		this.favouritesDeltasWriter = mapper.writerFor(new TypeReference<Map<String, Long>>() {
+		});
+		this.songIdsWriter = mapper.writerFor(new TypeReference<List<String>>() {
+		});
+		this.statusReader = mapper.readerFor(SongServiceResponse.class);
+		this.titlesReader = mapper.readerFor(SongTitlesResponse.class);
+		this.songServiceUrl = songServiceUrl;
+		this.titleBatchSize = titleBatchSize;
+		this.titleLookupConcurrency = titleLookupConcurrency;
+	}
+
+	/**
+	 * Sends a request to /updateSongFavouritesCounts (PUT) on the Song Microservice, changing the favourites count of
+	 * each of the given songs by its delta. The Song Microservice drops a batch whose batchId it has already applied, so
+	 * a batch that failed can be sent again with the same batchId without being applied twice.
+	 * 
+	 * @param batchId the id of the batch of changes
+	 * @param favouritesDeltas the change to the favourites count of each song, with the songIds as keys
+	 * @return true, if the Song Microservice applied the deltas, false otherwise (including when the bulkhead is full)
+	 */
+	public boolean updateSongFavouritesCounts(String batchId, Map<String, Long> favouritesDeltas) {
+		if (!bulkhead.tryAcquirePermission()) {
+			return false;
+		}
+
+		try {
+			RequestBody body = RequestBody.create(favouritesDeltasWriter.writeValueAsBytes(favouritesDeltas), JSON);
+
+			HttpUrl url = HttpUrl.get(songServiceUrl + "/updateSongFavouritesCounts").newBuilder()
+					.addQueryParameter("batchId", batchId).build();
+
+			Request okRequest = new Request.Builder().url(url).method("PUT", body).build();
+
+			try (Response responseFromSMS = client.newCall(okRequest).execute()) {
+				if (!responseFromSMS.isSuccessful()) {
+					return false;
+				}
+
+				SongServiceResponse responseBody = statusReader.readValue(responseFromSMS.body().byteStream());
+
+				return responseBody.isOk();
+			}
+		} catch (IOException e) {
+			return false;
+		} finally {
+			bulkhead.onComplete();
+		}
+	}
+
+	/**
+	 * Sends requests to /getSongTitlesByIds (POST) on the Song Microservice for the given songs, split into batches of
+	 * at most songService.titleBatchSize songIds. The batches are sent asynchronously, with at most
+	 * songService.titleLookupConcurrency of them in flight at once for this call, whatever other calls are in flight, so
+	 * no thread waits for them. All the batches take up a single place in the bulkhead until the last one completes.
+	 * 
+	 * @param songIds the distinct songIds to find the titles of
+	 * @return a future completed with a map of the found song titles with the songIds as keys (songs that were not found
+	 * are left out), or with null if any of the calls to the Song Microservice failed or the bulkhead is full
+	 */
+	public CompletableFuture<Map<String, String>> getSongTitles(Collection<String> songIds) {
+
+		final Map<String, String> titlesById = new ConcurrentHashMap<String, String>();
+
+		// Completed by whichever call to the Song Microservice completes last
+		final CompletableFuture<Map<String, String>> songTitles = new CompletableFuture<Map<String, String>>();
+
+		if (songIds.isEmpty()) {
+			songTitles.complete(titlesById);
+			return songTitles;
+		}
+
+		// Splitting the songIds into batches, each sent in a request of its own
+		List<Request> requests = new ArrayList<Request>();
+		List<String> batch = new ArrayList<String>(Math.min(titleBatchSize, songIds.size()));
+
+		try {
+			for (String songId : songIds) {
+				batch.add(songId);
+
+				if (batch.size() == titleBatchSize) {
+					requests.add(songTitlesRequest(batch));
+					batch.clear();
+				}
+			}
+
+			if (!batch.isEmpty()) {
+				requests.add(songTitlesRequest(batch));
+			}
+		} catch (IOException e) {
+			songTitles.complete(null);
+			return songTitles;
+		}
+
+		if (!bulkhead.tryAcquirePermission()) {
+			songTitles.complete(null);
+			return songTitles;
+		}
+
+		// Keeps track of whether all the calls to the Song Microservice are successful
+		final AtomicBoolean goodCall = new AtomicBoolean(true);
+
+		// Counts down as each of the calls to the Song Microservice completes
+		final AtomicInteger remainingCalls = new AtomicInteger(requests.size());
+
+		// The index of the next request to send, as each completed call sends the next one
+		final AtomicInteger nextRequest = new AtomicInteger(Math.min(titleLookupConcurrency, requests.size()));
+
+		Callback callback = new Callback() {
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				goodCall.set(false);
+				callCompleted();
+			}
+
+			@Override
+			public void onResponse(Call call, Response responseGSTBI) {
+				try (Response response = responseGSTBI) {
+					// Reading the body straight from the stream into the response, in a single pass
+					SongTitlesResponse responseBody = titlesReader.readValue(response.body().byteStream());
+
+					// The songs that were not found are listed as missing, and left out of the titles
+					if (responseBody.isOk() && responseBody.getData() != null) {
+						titlesById.putAll(responseBody.getData().getTitles());
+					} else {
+						goodCall.set(false);
+					}
+				} catch (Exception e) {
+					goodCall.set(false);
+				} finally {
+					callCompleted();
+				}
+			}
+
+			private void callCompleted() {
+				int next = nextRequest.getAndIncrement();
+
+				if (next < requests.size()) {
+					client.newCall(requests.get(next)).enqueue(this);
+				}
+
+				if (remainingCalls.decrementAndGet() == 0) {
+					bulkhead.onComplete();
+					songTitles.complete(goodCall.get() ? titlesById : null);
+				}
+			}
+		};
+
+		for (Request okRequest : requests.subList(0, Math.min(titleLookupConcurrency, requests.size()))) {
+			client.newCall(okRequest).enqueue(callback);
+		}
+
+		return songTitles;
+	}
+
+	/**
+	 * Builds a request to /getSongTitlesByIds (POST) on the Song Microservice for the given songs
+	 * 
+	 * @param songIds the songIds to find the titles of
+	 * @return the request
+	 * @throws IOException if the songIds can't be written as JSON
+	 */
+	private Request songTitlesRequest(List<String> songIds) throws IOException {
+		RequestBody body = RequestBody.create(songIdsWriter.writeValueAsBytes(songIds), JSON);
+
+		return new Request.Builder().url(songServiceUrl + "/getSongTitlesByIds").method("POST", body).build();
+	}
+}
@@ -0,0 +1,173 @@
+package com.csc301.profilemicroservice;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+@Configuration
+public class SongServiceClientConfiguration {
+
+	/**
+	 * Creates the client all calls to the Song Microservice are made with, so that they share one pool of connections
+	 *
+	 * @param connectTimeoutMillis how long to wait for a connection to the Song Microservice to be established
+	 * @param readTimeoutMillis how long to wait for each read of a response from the Song Microservice
+	 * @param callTimeoutMillis how long a whole call to the Song Microservice, including retries, can take
+	 * @param maxIdleConnections the maximum number of connections kept open while waiting for the next call
+	 * @param keepAliveSeconds how long an idle connection is kept open for
+	 * @param h2c whether to talk to the Song Microservice over HTTP/2 without TLS, which it must have enabled
+	 * @param maxConcurrentRequests the maximum number of asynchronous calls in flight at once, across all callers
+	 * @param virtualThreadExecutor the executor asynchronous calls are run on, if virtual threads are enabled
+	 * @param songServiceCircuitBreaker the circuit breaker every call to the Song Microservice passes through
+	 * @param meterRegistry the registry the timings of the calls are published to
+	 * @return the client
+	 */
+	@Bean
+	public OkHttpClient songServiceHttpClient(
+			@Value("${songService.connectTimeoutMillis:1000}") long connectTimeoutMillis,
+			@Value("${songService.readTimeoutMillis:5000}") long readTimeoutMillis,
+			@Value("${songService.callTimeoutMillis:10000}") long callTimeoutMillis,
+			@Value("${songService.maxIdleConnections:32}") int maxIdleConnections,
+			@Value("${songService.keepAliveSeconds:300}") long keepAliveSeconds,
+			@Value("${songService.h2c:false}") boolean h2c,
+			@Value("${songService.maxConcurrentRequests:64}") int maxConcurrentRequests,
+			@Qualifier("virtualThreadExecutor") ObjectProvider<ExecutorService> virtualThreadExecutor,
+			CircuitBreaker songServiceCircuitBreaker, MeterRegistry meterRegistry) {
+
+		Dispatcher dispatcher = VirtualThreadConfiguration.okHttpDispatcher(virtualThreadExecutor);
+		dispatcher.setMaxRequests(maxConcurrentRequests);
+		dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+
+		OkHttpClient.Builder builder = new OkHttpClient.Builder()
+				.dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+				.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+				.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+				.writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+				.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+				.addInterceptor(new TimingInterceptor(meterRegistry, "songService"))
+				.addInterceptor(new CircuitBreakerInterceptor(songServiceCircuitBreaker));
+
+		if (h2c) {
+			builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Creates the circuit breaker around calls to the Song Microservice. It opens once failureRateThreshold percent of
+	 * the last slidingWindowSize calls failed, or slowCallRateThreshold percent of them took longer than
+	 * slowCallDurationThresholdMillis, rejecting every call for waitDurationInOpenStateMillis. It then half-opens, and
+	 * closes again if the next permittedCallsInHalfOpenState calls succeed.
+	 *
+	 * @param failureRateThreshold the percentage of failed calls at which the breaker opens
+	 * @param slowCallRateThreshold the percentage of slow calls at which the breaker opens
+	 * @param slowCallDurationThresholdMillis how long a call can take before it counts as slow
+	 * @param slidingWindowSize the number of most recent calls the rates are calculated over
+	 * @param minimumNumberOfCalls the number of calls that must be made before the rates are calculated at all
+	 * @param waitDurationInOpenStateMillis how long the breaker stays open before letting probing calls through
+	 * @param permittedCallsInHalfOpenState the number of probing calls let through while half-open
+	 * @return the circuit breaker
+	 */
+	@Bean
+	public CircuitBreaker songServiceCircuitBreaker(
+			@Value("${songService.circuitBreaker.failureRateThreshold:50}") float failureRateThreshold,
+			@Value("${songService.circuitBreaker.slowCallRateThreshold:50}") float slowCallRateThreshold,
+			@Value("${songService.circuitBreaker.slowCallDurationThresholdMillis:2000}") long slowCallDurationThresholdMillis,
+			@Value("${songService.circuitBreaker.slidingWindowSize:50}") int slidingWindowSize,
+			@Value("${songService.circuitBreaker.minimumNumberOfCalls:20}") int minimumNumberOfCalls,
+			@Value("${songService.circuitBreaker.waitDurationInOpenStateMillis:10000}") long waitDurationInOpenStateMillis,
+			@Value("${songService.circuitBreaker.permittedCallsInHalfOpenState:5}") int permittedCallsInHalfOpenState) {
+
+		CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+				.failureRateThreshold(failureRateThreshold)
+				.slowCallRateThreshold(slowCallRateThreshold)
+				.slowCallDurationThreshold(Duration.ofMillis(slowCallDurationThresholdMillis))
+				.slidingWindowSize(slidingWindowSize)
+				.minimumNumberOfCalls(minimumNumberOfCalls)
+				.waitDurationInOpenState(Duration.ofMillis(waitDurationInOpenStateMillis))
+				.permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+				.automaticTransitionFromOpenToHalfOpenEnabled(true)
+				.build();
+
+		return CircuitBreaker.of("songService", config);
+	}
+
+	/**
+	 * Creates the bulkhead that caps the number of operations waiting on the Song Microservice at once, so that when it
+	 * slows down, the request threads left over keep serving the routes that only need Neo4j
+	 *
+	 * @param maxConcurrentCalls the maximum number of operations waiting on the Song Microservice at once
+	 * @return the bulkhead
+	 */
+	@Bean
+	public Bulkhead songServiceBulkhead(@Value("${songService.bulkhead.maxConcurrentCalls:16}") int maxConcurrentCalls) {
+		BulkheadConfig config = BulkheadConfig.custom()
+				.maxConcurrentCalls(maxConcurrentCalls)
+				.maxWaitDuration(Duration.ZERO)
+				.build();
+
+		return Bulkhead.of("songService", config);
+	}
+
+	/**
+	 * Publishes the state of the circuit breaker (0 closed, 1 open, 2 half-open), its failure rate, the calls it rejected, and the room
+	 * left in the bulkhead, under the "songService" tag
+	 *
+	 * @param songServiceCircuitBreaker the circuit breaker around calls to the Song Microservice
+	 * @param songServiceBulkhead the bulkhead around operations on the Song Microservice
+	 * @return the binder of the circuit breaker and bulkhead metrics
+	 */
+	@Bean
+	public MeterBinder songServiceResilienceMetrics(CircuitBreaker songServiceCircuitBreaker,
+			Bulkhead songServiceBulkhead) {
+		return registry -> {
+			Gauge.builder("circuitBreaker.state", songServiceCircuitBreaker, breaker -> breaker.getState().getOrder())
+					.description("state of the circuit breaker").tag("client", "songService").register(registry);
+			Gauge.builder("circuitBreaker.failureRate", songServiceCircuitBreaker,
+					breaker -> breaker.getMetrics().getFailureRate())
+					.description("percentage of recent calls that failed").tag("client", "songService")
+					.register(registry);
+			Gauge.builder("circuitBreaker.notPermitted", songServiceCircuitBreaker,
+					breaker -> breaker.getMetrics().getNumberOfNotPermittedCalls())
+					.description("calls rejected since the breaker last opened").tag("client", "songService")
+					.register(registry);
+			Gauge.builder("bulkhead.available", songServiceBulkhead,
+					bulkhead -> bulkhead.getMetrics().getAvailableConcurrentCalls())
+					.description("operations that can still start").tag("client", "songService").register(registry);
+		};
+	}
+
+	/**
+	 * Publishes the usage of the client's connection pool, and the connections it leaked, under the "songService" tag
+	 *
+	 * @param songServiceHttpClient the client the calls to the Song Microservice are made with
+	 * @param songServiceUrl the base URL of the Song Microservice
+	 * @return the binder of the client metrics
+	 */
+	@Bean
+	public MeterBinder songServiceHttpClientMetrics(OkHttpClient songServiceHttpClient,
+			@Value("${songService.url:http://localhost:3001}") String songServiceUrl) {
+		return new OkHttpClientMetrics("songService", songServiceHttpClient, songServiceUrl);
+	}
+}
@@ -0,0 +1,27 @@
+package com.csc301.profilemicroservice;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The body of a response from the Song Microservice, of which only the status is read
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SongServiceResponse {
+
+	public static final String STATUS_OK = "OK";
+	public static final String STATUS_NOT_FOUND = "NOT_FOUND";
+
+	private String status;
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public boolean isOk() {
+		return STATUS_OK.equals(status);
+	}
+}
@@ -0,0 +1,47 @@
+package com.csc301.profilemicroservice;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The body of a response from /getSongTitlesByIds on the Song Microservice, whose data is the titles of the songs that
+ * were found and the songIds of those that were not
+ */
+public class SongTitlesResponse extends SongServiceResponse {
+
+	private SongTitles data;
+
+	public SongTitles getData() {
+		return data;
+	}
+
+	public void setData(SongTitles data) {
+		this.data = data;
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class SongTitles {
+
+		private Map<String, String> titles;
+
+		private List<String> missing;
+
+		public Map<String, String> getTitles() {
+			return titles;
+		}
+
+		public void setTitles(Map<String, String> titles) {
+			this.titles = titles;
+		}
+
+		public List<String> getMissing() {
+			return missing;
+		}
+
+		public void setMissing(List<String> missing) {
+			this.missing = missing;
+		}
+	}
+}
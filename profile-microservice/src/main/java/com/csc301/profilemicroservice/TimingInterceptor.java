@@ -0,0 +1,43 @@
+package com.csc301.profilemicroservice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Times every call an OkHttp client makes as the "okhttp.requests" metric, as the Song Microservice's
+ * TimingInterceptor does, for the calls this service makes to the Song Microservice.
+ */
+public class TimingInterceptor implements Interceptor {
+
+	private final MeterRegistry meterRegistry;
+
+	private final String clientName;
+
+	public TimingInterceptor(MeterRegistry meterRegistry, String clientName) {
+		this.meterRegistry = meterRegistry;
+		this.clientName = clientName;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		long start = System.nanoTime();
+		String status = "IO_ERROR";
+
+		try {
+			Response response = chain.proceed(request);
+			status = String.valueOf(response.code());
+
+			return response;
+		} finally {
+			meterRegistry.timer("okhttp.requests", "client", clientName, "method", request.method(), "route",
+					"/" + request.url().pathSegments().get(0), "status", status)
+					.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
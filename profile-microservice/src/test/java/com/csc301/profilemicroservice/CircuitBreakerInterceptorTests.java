@@ -0,0 +1,162 @@
+package com.csc301.profilemicroservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class CircuitBreakerInterceptorTests {
+
+	private static final int WINDOW_SIZE = 4;
+	private static final int PROBES = 2;
+	private static final long WAIT_IN_OPEN_STATE_MILLIS = 200;
+
+	private MockWebServer songService;
+	private CircuitBreaker circuitBreaker;
+	private OkHttpClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		songService = new MockWebServer();
+		songService.start();
+
+		// Opens once half of the last four calls failed, and half-opens on the first call after the wait
+		CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+				.failureRateThreshold(50)
+				.slidingWindowSize(WINDOW_SIZE)
+				.minimumNumberOfCalls(WINDOW_SIZE)
+				.waitDurationInOpenState(Duration.ofMillis(WAIT_IN_OPEN_STATE_MILLIS))
+				.permittedNumberOfCallsInHalfOpenState(PROBES)
+				.build();
+		circuitBreaker = CircuitBreaker.of("songService", config);
+
+		client = new OkHttpClient.Builder().retryOnConnectionFailure(false)
+				.addInterceptor(new CircuitBreakerInterceptor(circuitBreaker)).build();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		songService.shutdown();
+	}
+
+	@Test
+	public void serverErrorsAreFailures() throws IOException {
+		songService.enqueue(new MockResponse().setResponseCode(503));
+		songService.enqueue(new MockResponse().setResponseCode(200));
+		songService.enqueue(new MockResponse().setResponseCode(500));
+		songService.enqueue(new MockResponse().setResponseCode(404));
+
+		assertEquals(503, call());
+		assertEquals(200, call());
+		assertEquals(500, call());
+
+		// A client error is the caller's fault, so it doesn't count against the Song Microservice
+		assertEquals(404, call());
+
+		assertEquals(2, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+		assertEquals(2, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void ioErrorsAreFailures() throws IOException {
+		// The Song Microservice going away refuses the connection
+		songService.shutdown();
+
+		try {
+			call();
+			fail("The call should have failed");
+		} catch (IOException e) {
+			assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+		}
+	}
+
+	@Test
+	public void openBreakerFailsFast() {
+		circuitBreaker.transitionToOpenState();
+
+		try {
+			call();
+			fail("The call should have been rejected");
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof CallNotPermittedException);
+		}
+
+		assertEquals(0, songService.getRequestCount());
+		assertEquals(1, circuitBreaker.getMetrics().getNumberOfNotPermittedCalls());
+	}
+
+	@Test
+	public void halfOpenBreakerProbesAndCloses() throws Exception {
+		openWithFailures();
+
+		// Still open, so nothing reaches the Song Microservice
+		assertRejected();
+		Thread.sleep(WAIT_IN_OPEN_STATE_MILLIS * 2);
+
+		for (int i = 0; i < PROBES; i++) {
+			songService.enqueue(new MockResponse().setResponseCode(200));
+			assertEquals(200, call());
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertEquals(WINDOW_SIZE + PROBES, songService.getRequestCount());
+	}
+
+	@Test
+	public void failedProbesOpenBreakerAgain() throws Exception {
+		openWithFailures();
+		Thread.sleep(WAIT_IN_OPEN_STATE_MILLIS * 2);
+
+		for (int i = 0; i < PROBES; i++) {
+			songService.enqueue(new MockResponse().setResponseCode(500));
+			assertEquals(500, call());
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertRejected();
+	}
+
+	private void openWithFailures() throws IOException {
+		for (int i = 0; i < WINDOW_SIZE; i++) {
+			songService.enqueue(new MockResponse().setResponseCode(500));
+			call();
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+	private void assertRejected() {
+		int requestCount = songService.getRequestCount();
+
+		try {
+			call();
+			fail("The call should have been rejected");
+		} catch (IOException e) {
+			assertEquals(requestCount, songService.getRequestCount());
+		}
+	}
+
+	private int call() throws IOException {
+		Request request = new Request.Builder().url(songService.url("/getSongTitlesByIds")).build();
+
+		try (Response response = client.newCall(request).execute()) {
+			return response.code();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package com.csc301.profilemicroservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class FavouritesDeltaBufferTests {
+
+	private static final int SONGS = 10;
+	private static final int LIKERS = 16;
+	private static final int CHANGES_PER_LIKER = 5000;
+
+	@Test
+	public void countsConvergeAfterFlush() throws Exception {
+		final RecordingSink sink = new RecordingSink();
+		final FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, 100, 3600);
+		final Map<String, AtomicLong> expected = new ConcurrentHashMap<String, AtomicLong>();
+
+		ExecutorService likers = Executors.newFixedThreadPool(LIKERS);
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final AtomicBoolean liking = new AtomicBoolean(true);
+
+		// Flushing continuously while the likes are being added, with the sink failing every so often, sometimes after
+		// applying the changes
+		Thread flusher = new Thread(() -> {
+			while (liking.get()) {
+				buffer.flush();
+			}
+		});
+
+		for (int i = 0; i < LIKERS; i++) {
+			likers.execute(() -> {
+				try {
+					startGate.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				for (int j = 0; j < CHANGES_PER_LIKER; j++) {
+					String songId = "song" + ThreadLocalRandom.current().nextInt(SONGS);
+					long delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+
+					buffer.add(songId, delta);
+					expected.computeIfAbsent(songId, key -> new AtomicLong()).addAndGet(delta);
+
+					// The likers flush now and then too, so the sink is called often however the threads are scheduled
+					if (j % 500 == 0) {
+						buffer.flush();
+					}
+				}
+			});
+		}
+
+		flusher.start();
+		startGate.countDown();
+		likers.shutdown();
+		assertTrue(likers.awaitTermination(30, TimeUnit.SECONDS));
+		liking.set(false);
+		flusher.join();
+
+		sink.failing.set(false);
+		assertTrue(buffer.flush());
+
+		for (Map.Entry<String, AtomicLong> song : expected.entrySet()) {
+			assertEquals(song.getValue().get(), sink.total(song.getKey()));
+		}
+		assertTrue(sink.failures.get() > 0);
+	}
+
+	@Test
+	public void failedFlushKeepsChanges() {
+		RecordingSink sink = new RecordingSink();
+		FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, Integer.MAX_VALUE, 3600);
+
+		buffer.add("song", 1);
+		buffer.add("song", 1);
+		buffer.add("song", -1);
+
+		sink.failing.set(true);
+		sink.alwaysFail = true;
+		assertFalse(buffer.flush());
+		assertEquals(0, sink.total("song"));
+
+		sink.alwaysFail = false;
+		sink.failing.set(false);
+		assertTrue(buffer.flush());
+		assertEquals(1, sink.total("song"));
+	}
+
+	@Test
+	public void lostResponseIsNotAppliedTwice() {
+		RecordingSink sink = new RecordingSink();
+		FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, Integer.MAX_VALUE, 3600);
+
+		buffer.add("song", 1);
+
+		// The sink applies the batch but the buffer is told it failed, so the same batch is sent again
+		sink.failing.set(false);
+		sink.losingResponses = true;
+		assertFalse(buffer.flush());
+		assertEquals(1, sink.total("song"));
+
+		sink.losingResponses = false;
+		buffer.add("song", 1);
+		assertTrue(buffer.flush());
+		assertEquals(2, sink.total("song"));
+	}
+
+	@Test
+	public void discardedSongIsNotSentAgain() {
+		RecordingSink sink = new RecordingSink();
+		FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, Integer.MAX_VALUE, 3600);
+
+		buffer.add("deleted", 1);
+		buffer.add("kept", 1);
+
+		sink.failing.set(true);
+		sink.alwaysFail = true;
+		assertFalse(buffer.flush());
+
+		// The song is deleted while its change is waiting to be sent again, and a like racing with the deletion follows
+		buffer.discard("deleted");
+		buffer.add("deleted", 1);
+
+		sink.alwaysFail = false;
+		sink.failing.set(false);
+		assertTrue(buffer.flush());
+		assertEquals(0, sink.total("deleted"));
+		assertEquals(1, sink.total("kept"));
+		assertEquals(0, buffer.bufferedSongs());
+	}
+
+	@Test
+	public void cancelledChangesAreRemoved() {
+		RecordingSink sink = new RecordingSink();
+		FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, Integer.MAX_VALUE, 3600);
+
+		for (int i = 0; i < 100; i++) {
+			buffer.add("song" + i, 1);
+			buffer.add("song" + i, -1);
+		}
+
+		assertEquals(0, buffer.bufferedSongs());
+		assertTrue(buffer.flush());
+		assertTrue(sink.batchIds.isEmpty());
+	}
+
+	@Test
+	public void closeFlushesEverything() throws Exception {
+		RecordingSink sink = new RecordingSink();
+		FavouritesDeltaBuffer buffer = new FavouritesDeltaBuffer(sink, Integer.MAX_VALUE, 3600);
+
+		for (int i = 0; i < 100; i++) {
+			buffer.add("song", 1);
+		}
+
+		buffer.close();
+		assertEquals(100, sink.total("song"));
+
+		// A like that arrives while the service is shutting down is still sent
+		buffer.add("song", 1);
+		assertEquals(101, sink.total("song"));
+	}
+
+	/**
+	 * A sink that totals the changes it applies, dropping batches it has already applied like the Song Microservice does.
+	 * While failing is set it fails every third flush, applying the changes first every other time it fails, and while
+	 * losingResponses is set it applies every batch but reports it failed.
+	 */
+	private static class RecordingSink implements FavouritesDeltaBuffer.FavouritesSink {
+		private final Map<String, Long> totals = new HashMap<String, Long>();
+		private final Set<String> batchIds = new HashSet<String>();
+		private final AtomicBoolean failing = new AtomicBoolean(true);
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger failures = new AtomicInteger();
+		private volatile boolean alwaysFail = false;
+		private volatile boolean losingResponses = false;
+
+		@Override
+		public synchronized boolean apply(String batchId, Map<String, Long> favouritesDeltas) {
+			if (failing.get() && (alwaysFail || calls.incrementAndGet() % 3 == 0)) {
+				int failure = failures.incrementAndGet();
+
+				if (!alwaysFail && failure % 2 == 0) {
+					applyOnce(batchId, favouritesDeltas);
+				}
+				return false;
+			}
+
+			applyOnce(batchId, favouritesDeltas);
+			return !losingResponses;
+		}
+
+		private void applyOnce(String batchId, Map<String, Long> favouritesDeltas) {
+			if (!batchIds.add(batchId)) {
+				return;
+			}
+
+			for (Map.Entry<String, Long> favouritesDelta : favouritesDeltas.entrySet()) {
+				totals.merge(favouritesDelta.getKey(), favouritesDelta.getValue(), Long::sum);
+			}
+		}
+
+		private synchronized long total(String songId) {
+			return totals.getOrDefault(songId, 0L);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.csc301.profilemicroservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SongMetadataCacheTests {
+
+	@Test
+	public void lookupStartedBeforeEvictionIsNotStored() {
+		SongMetadataCache cache = new SongMetadataCache(100, 3600, 60, new SimpleMeterRegistry());
+
+		long lookupGeneration = cache.getGeneration();
+		cache.evictSong("song");
+		cache.putSongTitle("song", "Title", lookupGeneration);
+
+		assertNull(cache.getSongTitle("song"));
+	}
+
+	@Test
+	public void lookupStartedAfterEvictionIsStored() {
+		SongMetadataCache cache = new SongMetadataCache(100, 3600, 60, new SimpleMeterRegistry());
+
+		cache.evictSong("song");
+		cache.putSongTitle("song", "Title", cache.getGeneration());
+
+		assertEquals("Title", cache.getSongTitle("song"));
+	}
+
+	@Test
+	public void evictionOfOtherSongsDoesNotBlockStoring() {
+		SongMetadataCache cache = new SongMetadataCache(100, 3600, 60, new SimpleMeterRegistry());
+
+		long lookupGeneration = cache.getGeneration();
+		cache.evictSong("otherSong");
+		cache.putSongTitle("song", "Title", lookupGeneration);
+
+		assertEquals("Title", cache.getSongTitle("song"));
+	}
+}
@@ -0,0 +1,124 @@
+package com.csc301.profilemicroservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class SongServiceClientTests {
+
+	private static final String USER_NAME = "feed-user";
+	private static final String SONG_ID = "5d61728193528481fe5a3122";
+
+	private MockWebServer songService;
+	private Bulkhead bulkhead;
+	private ProfileController profileController;
+
+	@Before
+	public void setUp() throws IOException {
+		songService = new MockWebServer();
+		songService.start();
+
+		bulkhead = Bulkhead.of("songService",
+				BulkheadConfig.custom().maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build());
+
+		SongServiceClient songServiceClient = new SongServiceClient(new ObjectMapper(), songServiceUrl(), 500, 8,
+				new OkHttpClient(), bulkhead);
+
+		DbQueryStatus friendsSongs = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		Map<String, List<String>> friendsSongIds = new HashMap<String, List<String>>();
+		friendsSongIds.put("feed-friend", Collections.singletonList(SONG_ID));
+		friendsSongs.setData(friendsSongIds);
+
+		// A driver that finds the same liked song for the user's friend every time, instead of querying Neo4j
+		ProfileDriverImpl profileDriver = new ProfileDriverImpl(null) {
+			@Override
+			public DbQueryStatus getAllSongFriendsLike(String userName) {
+				return friendsSongs;
+			}
+		};
+
+		profileController = new ProfileController(profileDriver, null,
+				new SongMetadataCache(1000, 3600, 60, new SimpleMeterRegistry()),
+				new FavouritesDeltaBuffer((batchId, favouritesDeltas) -> true, 1000, 3600), songServiceClient);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		songService.shutdown();
+	}
+
+	@Test
+	public void feedFindsTitles() {
+		songService.enqueue(new MockResponse().setBody(
+				"{\"status\":\"OK\",\"data\":{\"titles\":{\"" + SONG_ID + "\":\"Feed Song\"},\"missing\":[]}}"));
+
+		Map<String, Object> response = friendFeed();
+
+		assertEquals(HttpStatus.OK, response.get("status"));
+		assertEquals(Collections.singletonMap("feed-friend", Arrays.asList("Feed Song")), response.get("data"));
+
+		// The bulkhead is given back once the lookup completes
+		assertEquals(1, bulkhead.getMetrics().getAvailableConcurrentCalls());
+	}
+
+	@Test
+	public void feedRejectedWhenBulkheadIsFull() {
+		// Another operation is already waiting on the Song Microservice
+		assertTrue(bulkhead.tryAcquirePermission());
+
+		Map<String, Object> response = friendFeed();
+
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.get("status"));
+		assertEquals(0, songService.getRequestCount());
+
+		bulkhead.onComplete();
+	}
+
+	@Test
+	public void titlesAreNullWhenBulkheadIsFull() {
+		assertTrue(bulkhead.tryAcquirePermission());
+
+		SongServiceClient songServiceClient = new SongServiceClient(new ObjectMapper(), songServiceUrl(), 500, 8,
+				new OkHttpClient(), bulkhead);
+
+		assertNull(songServiceClient.getSongTitles(Collections.singletonList(SONG_ID)).join());
+		assertEquals(0, songService.getRequestCount());
+
+		bulkhead.onComplete();
+	}
+
+	private String songServiceUrl() {
+		String url = songService.url("/").toString();
+
+		return url.substring(0, url.length() - 1);
+	}
+
+	private Map<String, Object> friendFeed() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/getAllFriendFavouriteSongTitles/" + USER_NAME);
+
+		return (Map<String, Object>) profileController.getAllFriendFavouriteSongTitles(USER_NAME, request);
+	}
+}
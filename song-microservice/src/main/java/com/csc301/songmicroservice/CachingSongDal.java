@@ -0,0 +1,214 @@
+package com.csc301.songmicroservice;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A SongDal that keeps recently read songs in a bounded, in-process cache in front of the MongoDB. Concurrent misses for
+ * the same song are coalesced so only one query is made for them, and songs that were not found are remembered for a
+ * short time so that repeated lookups of a bad ID don't reach the database either.
+ */
+@Repository
+@Primary
+public class CachingSongDal implements SongDal {
+
+	private final SongDal songDal;
+
+	// Songs read from the MongoDB, with their ObjectIDs as keys
+	private final Cache<String, CachedSong> songs;
+
+	@Autowired
+	public CachingSongDal(@Qualifier("songDalImpl") SongDal songDal,
+			@Value("${songCache.maximumSize:100000}") long maximumSize,
+			@Value("${songCache.expireAfterWriteSeconds:600}") long expireAfterWriteSeconds,
+			@Value("${songCache.notFoundExpireAfterWriteSeconds:5}") long notFoundExpireAfterWriteSeconds,
+			MeterRegistry meterRegistry) {
+		this.songDal = songDal;
+
+		final long foundExpiry = TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds);
+		final long notFoundExpiry = TimeUnit.SECONDS.toNanos(notFoundExpireAfterWriteSeconds);
+
+		this.songs = Caffeine.newBuilder().maximumSize(maximumSize).expireAfter(new Expiry<String, CachedSong>() {
+
+			@Override
+			public long expireAfterCreate(String songId, CachedSong cachedSong, long currentTime) {
+				return cachedSong.song != null ? foundExpiry : notFoundExpiry;
+			}
+
+			@Override
+			public long expireAfterUpdate(String songId, CachedSong cachedSong, long currentTime,
+					long currentDuration) {
+				return expireAfterCreate(songId, cachedSong, currentTime);
+			}
+
+			@Override
+			public long expireAfterRead(String songId, CachedSong cachedSong, long currentTime,
+					long currentDuration) {
+				return currentDuration;
+			}
+		}).recordStats().build();
+
+		CaffeineCacheMetrics.monitor(meterRegistry, songs, "songs");
+	}
+
+	@Override
+	public DbQueryStatus addSong(Song songToAdd) {
+		return songDal.addSong(songToAdd);
+	}
+
+	@Override
+	public DbQueryStatus addSongs(List<Song> songsToAdd) {
+		return songDal.addSongs(songsToAdd);
+	}
+
+	/**
+	 * Handles finding a Song object given its ObjectID, reading through the cache. Only one query is made to the MongoDB
+	 * for any number of concurrent lookups of the same uncached song.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing all properties of the song
+	 */
+	@Override
+	public DbQueryStatus findSongById(String songId) {
+
+		if (songId.isEmpty()) {
+			return songDal.findSongById(songId);
+		}
+
+		CachedSong cachedSong = songs.get(songId, this::loadSong);
+
+		if (cachedSong.song == null) {
+			return new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
+		}
+
+		DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		toReturn.setData(cachedSong.song);
+
+		return toReturn;
+	}
+
+	/**
+	 * Handles finding a Song object's title given its ObjectID, reading through the cache.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the title of the song
+	 */
+	@Override
+	public DbQueryStatus getSongTitleById(String songId) {
+
+		DbQueryStatus songFromID = findSongById(songId);
+		DbQueryStatus toReturn;
+
+		if (songFromID.getdbQueryExecResult() != DbQueryExecResult.QUERY_OK) {
+			toReturn = new DbQueryStatus(songFromID.getMessage(), songFromID.getdbQueryExecResult());
+		} else {
+			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(((Map<String, String>) songFromID.getData()).get(Song.KEY_SONG_NAME));
+		}
+
+		return toReturn;
+	}
+
+	@Override
+	public DbQueryStatus getSongTitlesByIds(List<String> songIds) {
+		return songDal.getSongTitlesByIds(songIds);
+	}
+
+	/**
+	 * Handles deleting a song given its ObjectID, and evicts it from the cache.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 */
+	@Override
+	public DbQueryStatus deleteSongById(String songId) {
+		DbQueryStatus toReturn = songDal.deleteSongById(songId);
+		songs.invalidate(songId);
+
+		return toReturn;
+	}
+
+	/**
+	 * Handles incrementing/decrementing the favourites count of a song, and evicts it from the cache so the next read
+	 * sees the new count.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @param shouldDecrement the boolean value of whether the count should be incremented or decremented
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the new favourites count
+	 */
+	@Override
+	public DbQueryStatus updateSongFavouritesCount(String songId, boolean shouldDecrement) {
+		DbQueryStatus toReturn = songDal.updateSongFavouritesCount(songId, shouldDecrement);
+
+		if (toReturn.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
+			songs.invalidate(songId);
+		}
+
+		return toReturn;
+	}
+
+	/**
+	 * Handles changing the favourites counts of many songs at once, and evicts them from the cache so the next reads see
+	 * the new counts.
+	 *
+	 * @param favouritesDeltas the change to the favourites count of each song, with the ObjectIDs of the songs as keys
+	 * @param clampNegative the boolean value of whether counts that would go negative should be set to zero
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the result for each song
+	 */
+	@Override
+	public DbQueryStatus updateSongFavouritesCounts(String batchId, Map<String, Long> favouritesDeltas,
+			boolean clampNegative) {
+		DbQueryStatus toReturn = songDal.updateSongFavouritesCounts(batchId, favouritesDeltas, clampNegative);
+
+		if (favouritesDeltas != null) {
+			songs.invalidateAll(favouritesDeltas.keySet());
+		}
+
+		return toReturn;
+	}
+
+	/**
+	 * Reads a song from the MongoDB to be stored in the cache
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return the song that was read, which is empty if the song was not found
+	 */
+	private CachedSong loadSong(String songId) {
+		DbQueryStatus songFromID = songDal.findSongById(songId);
+
+		switch (songFromID.getdbQueryExecResult()) {
+		case QUERY_OK:
+			return new CachedSong(Collections.unmodifiableMap((Map<String, String>) songFromID.getData()));
+		case QUERY_ERROR_NOT_FOUND:
+			return new CachedSong(null);
+		default:
+			throw new IllegalStateException(songFromID.getMessage());
+		}
+	}
+
+	/**
+	 * A song held in the cache, where a null song means that it was not found in the MongoDB
+	 */
+	private static class CachedSong {
+		private final Map<String, String> song;
+
+		private CachedSong(Map<String, String> song) {
+			this.song = song;
+		}
+	}
+}
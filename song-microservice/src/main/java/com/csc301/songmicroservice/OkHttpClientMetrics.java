@@ -0,0 +1,82 @@
+package com.csc301.songmicroservice;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Publishes the usage of an OkHttp client's connection pool and dispatcher, tagged with the name of the client. OkHttp
+ * has no API for connections whose response was never closed, and only reports them through a warning logged once the
+ * response has been garbage collected, so these are counted by a handler on OkHttp's logger.
+ */
+public class OkHttpClientMetrics implements MeterBinder {
+
+	private final String clientName;
+
+	private final OkHttpClient client;
+
+	// The start of the warning OkHttp logs when a connection to the client's service is leaked
+	private final String leakMessagePrefix;
+
+	// Kept so that the logger, along with the handler counting leaks on it, is not garbage collected
+	private Logger okHttpLogger;
+
+	/**
+	 * @param clientName the name the client's metrics are tagged with
+	 * @param client the client whose usage is measured
+	 * @param baseUrl the base URL of the service the client calls
+	 */
+	public OkHttpClientMetrics(String clientName, OkHttpClient client, String baseUrl) {
+		this.clientName = clientName;
+		this.client = client;
+		this.leakMessagePrefix = "A connection to " + HttpUrl.get(baseUrl).resolve("/") + " was leaked";
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		ConnectionPool pool = client.connectionPool();
+		Dispatcher dispatcher = client.dispatcher();
+
+		Gauge.builder("okhttp.pool.connections.inUse", pool, p -> p.connectionCount() - p.idleConnectionCount())
+				.description("connections carrying a call").tag("client", clientName).register(registry);
+		Gauge.builder("okhttp.pool.connections.idle", pool, ConnectionPool::idleConnectionCount)
+				.description("connections waiting in the pool").tag("client", clientName).register(registry);
+		Gauge.builder("okhttp.calls.running", dispatcher, Dispatcher::runningCallsCount)
+				.description("calls in flight").tag("client", clientName).register(registry);
+		Gauge.builder("okhttp.calls.queued", dispatcher, Dispatcher::queuedCallsCount)
+				.description("asynchronous calls waiting for the dispatcher").tag("client", clientName)
+				.register(registry);
+
+		Counter leaked = Counter.builder("okhttp.connections.leaked")
+				.description("connections whose response was never closed").tag("client", clientName)
+				.register(registry);
+
+		okHttpLogger = Logger.getLogger(OkHttpClient.class.getName());
+		okHttpLogger.addHandler(new Handler() {
+
+			@Override
+			public void publish(LogRecord record) {
+				if (record.getMessage() != null && record.getMessage().startsWith(leakMessagePrefix)) {
+					leaked.increment();
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+	}
+}
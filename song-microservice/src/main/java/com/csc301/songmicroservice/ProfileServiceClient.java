@@ -0,0 +1,86 @@
+package com.csc301.songmicroservice;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+@Component
+public class ProfileServiceClient {
+
+	private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+	private final OkHttpClient client;
+
+	private final ObjectMapper mapper;
+
+	// The base URL of the Profile Microservice
+	private final String profileServiceUrl;
+
+	public ProfileServiceClient(ObjectMapper mapper,
+			@Value("${profileService.url:http://localhost:3002}") String profileServiceUrl,
+			OkHttpClient profileServiceHttpClient) {
+		this.client = profileServiceHttpClient;
+		this.mapper = mapper;
+		this.profileServiceUrl = profileServiceUrl;
+	}
+
+	/**
+	 * Sends a request to /addSongs (PUT) on the Profile Microservice, adding a song node to the Neo4j database for each
+	 * of the given songs
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the MongoDB
+	 * @return true, if the Profile Microservice added the songs, false otherwise
+	 */
+	public boolean addSongs(List<String> songIds) {
+		return sendSongIds("/addSongs", songIds);
+	}
+
+	/**
+	 * Sends a request to /deleteSongsFromDb (PUT) on the Profile Microservice, removing the given songs and all their
+	 * relationships from the Neo4j database
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the MongoDB
+	 * @return true, if the Profile Microservice deleted the songs, false otherwise
+	 */
+	public boolean deleteSongs(List<String> songIds) {
+		return sendSongIds("/deleteSongsFromDb", songIds);
+	}
+
+	/**
+	 * Sends the given songIds as a JSON array to a route on the Profile Microservice
+	 * 
+	 * @param path the path of the route on the Profile Microservice
+	 * @param songIds the ObjectIDs of the songs in the MongoDB
+	 * @return true, if the Profile Microservice responded with an OK status, false otherwise
+	 */
+	private boolean sendSongIds(String path, List<String> songIds) {
+		try {
+			RequestBody body = RequestBody.create(mapper.writeValueAsBytes(songIds), JSON);
+
+			Request okRequest = new Request.Builder().url(profileServiceUrl + path).method("PUT", body).build();
+
+			try (Response responseFromPMS = client.newCall(okRequest).execute()) {
+				if (!responseFromPMS.isSuccessful()) {
+					return false;
+				}
+
+				Map<String, Object> responseBody = mapper.readValue(responseFromPMS.body().byteStream(), Map.class);
+
+				return "OK".equals(String.valueOf(responseBody.get("status")));
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
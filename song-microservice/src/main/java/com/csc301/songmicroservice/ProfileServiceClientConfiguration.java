@@ -0,0 +1,74 @@
+package com.csc301.songmicroservice;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+@Configuration
+public class ProfileServiceClientConfiguration {
+
+	/**
+	 * Creates the client all calls to the Profile Microservice are made with, so that they share one pool of connections
+	 *
+	 * @param connectTimeoutMillis how long to wait for a connection to the Profile Microservice to be established
+	 * @param readTimeoutMillis how long to wait for each read of a response from the Profile Microservice
+	 * @param callTimeoutMillis how long a whole call to the Profile Microservice, including retries, can take
+	 * @param maxIdleConnections the maximum number of connections kept open while waiting for the next call
+	 * @param keepAliveSeconds how long an idle connection is kept open for
+	 * @param h2c whether to talk to the Profile Microservice over HTTP/2 without TLS, which it must have enabled
+	 * @param virtualThreadExecutor the executor asynchronous calls are run on, if virtual threads are enabled
+	 * @param meterRegistry the registry the timings of the calls are published to
+	 * @return the client
+	 */
+	@Bean
+	public OkHttpClient profileServiceHttpClient(
+			@Value("${profileService.connectTimeoutMillis:1000}") long connectTimeoutMillis,
+			@Value("${profileService.readTimeoutMillis:30000}") long readTimeoutMillis,
+			@Value("${profileService.callTimeoutMillis:60000}") long callTimeoutMillis,
+			@Value("${profileService.maxIdleConnections:5}") int maxIdleConnections,
+			@Value("${profileService.keepAliveSeconds:300}") long keepAliveSeconds,
+			@Value("${profileService.h2c:false}") boolean h2c,
+			@Qualifier("virtualThreadExecutor") ObjectProvider<ExecutorService> virtualThreadExecutor,
+			MeterRegistry meterRegistry) {
+
+		OkHttpClient.Builder builder = new OkHttpClient.Builder()
+				.dispatcher(VirtualThreadConfiguration.okHttpDispatcher(virtualThreadExecutor))
+				.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+				.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+				.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+				.writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+				.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+				.addInterceptor(new TimingInterceptor(meterRegistry, "profileService"));
+
+		if (h2c) {
+			builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Publishes the usage of the client's connection pool, and the connections it leaked, under the "profileService" tag
+	 *
+	 * @param profileServiceHttpClient the client the calls to the Profile Microservice are made with
+	 * @param profileServiceUrl the base URL of the Profile Microservice
+	 * @return the binder of the client metrics
+	 */
+	@Bean
+	public MeterBinder profileServiceHttpClientMetrics(OkHttpClient profileServiceHttpClient,
+			@Value("${profileService.url:http://localhost:3002}") String profileServiceUrl) {
+		return new OkHttpClientMetrics("profileService", profileServiceHttpClient, profileServiceUrl);
+	}
+}
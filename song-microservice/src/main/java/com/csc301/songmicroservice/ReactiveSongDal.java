@@ -0,0 +1,93 @@
+package com.csc301.songmicroservice;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads songs from the MongoDB through the reactive driver, so that no thread is held while waiting on the database.
+ * Only active under the "reactive" profile, where it backs the ReactiveSongReadController.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveSongDal {
+
+	private final ReactiveMongoTemplate db;
+
+	@Autowired
+	public ReactiveSongDal(ReactiveMongoTemplate reactiveMongoTemplate) {
+		this.db = reactiveMongoTemplate;
+	}
+
+	/**
+	 * Handles finding a Song object in the MongoDB given its ObjectID.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return a Mono of the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing all
+	 * properties of the song
+	 */
+	public Mono<DbQueryStatus> findSongById(String songId) {
+
+		if (songId.isEmpty()) {
+			return Mono.just(new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC));
+		}
+
+		return this.db.findOne(SongDalImpl.liveSong(songId), Song.class).map(songFound -> {
+			DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(songFound.getJsonRepresentation());
+
+			return toReturn;
+		}).defaultIfEmpty(new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND));
+	}
+
+	/**
+	 * Handles finding a Song object's title in the MongoDB given its ObjectID.
+	 *
+	 * @param songId the ObjectID of the song in the database
+	 * @return a Mono of the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the title
+	 * of the song
+	 */
+	public Mono<DbQueryStatus> getSongTitleById(String songId) {
+
+		return findSongById(songId).map(songFromID -> {
+			if (!(songFromID.getMessage().equals("OK"))) {
+				return new DbQueryStatus(songFromID.getMessage(), songFromID.getdbQueryExecResult());
+			}
+
+			DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(((Map<String, String>) songFromID.getData()).get(Song.KEY_SONG_NAME));
+
+			return toReturn;
+		});
+	}
+
+	/**
+	 * Handles finding the titles of many songs in the MongoDB with a single query, given their ObjectIDs. The matching
+	 * documents are streamed straight into the map of titles rather than being collected into a list of songs first.
+	 *
+	 * @param songIds the ObjectIDs of the songs in the database
+	 * @return a Mono of the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing a map of
+	 * the found titles keyed by ObjectID, and a list of the ObjectIDs that were not found
+	 */
+	public Mono<DbQueryStatus> getSongTitlesByIds(List<String> songIds) {
+
+		if (songIds == null || songIds.isEmpty()) {
+			return Mono.just(new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC));
+		}
+
+		return this.db.find(SongDalImpl.songTitlesQuery(songIds), Song.class)
+				.collectMap(Song::getId, Song::getSongName)
+				.map(titlesFound -> {
+					DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+					toReturn.setData(SongDalImpl.titlesInRequestedOrder(songIds, titlesFound));
+
+					return toReturn;
+				});
+	}
+}
@@ -0,0 +1,91 @@
+package com.csc301.songmicroservice;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The read routes of the Song Microservice under the "reactive" profile, where they take the place of the
+ * SongReadController. They are served through the ReactiveSongDal, and return the same response bodies, but don't hold a
+ * request thread while waiting on the MongoDB.
+ */
+@RestController
+@RequestMapping("/")
+@Profile("reactive")
+public class ReactiveSongReadController {
+
+	@Autowired
+	private final ReactiveSongDal songDal;
+
+	public ReactiveSongReadController(ReactiveSongDal songDal) {
+		this.songDal = songDal;
+	}
+
+	/**
+	 * Controls and handles the route for /getSongById/{songId} (GET), and returns the title, artist name,
+	 * album name, and number of favourites for the song.
+	 * 
+	 * @param songId the ObjectID of the song in the MongoDB
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongById/{songId}", method = RequestMethod.GET)
+	public @ResponseBody Mono<RouteResponse> getSongById(@PathVariable("songId") String songId,
+			HttpServletRequest request) {
+
+		String path = String.format("GET %s", Utils.getUrl(request));
+
+		return songDal.findSongById(songId).map(dbQueryStatus -> new RouteResponse(path,
+				dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData()));
+	}
+
+	/**
+	 * Controls and handles the route for /getSongTitleById/{songId} (GET), and returns the title of the
+	 * song with the given ID.
+	 * 
+	 * @param songId the ObjectID of the song in the MongoDB
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongTitleById/{songId}", method = RequestMethod.GET)
+	public @ResponseBody Mono<RouteResponse> getSongTitleById(@PathVariable("songId") String songId,
+			HttpServletRequest request) {
+
+		String path = String.format("GET %s", Utils.getUrl(request));
+
+		return songDal.getSongTitleById(songId).map(dbQueryStatus -> new RouteResponse(path,
+				dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData()));
+	}
+
+	/**
+	 * Controls and handles the route for /getSongTitlesByIds (POST), and returns the titles of all the songs with the
+	 * given IDs, along with the IDs that could not be found.
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the MongoDB, as a JSON array
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongTitlesByIds", method = RequestMethod.POST)
+	public @ResponseBody Mono<Map<String, Object>> getSongTitlesByIds(
+			@RequestBody List<String> songIds, HttpServletRequest request) {
+
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", String.format("POST %s", Utils.getUrl(request)));
+
+		return songDal.getSongTitlesByIds(songIds).map(dbQueryStatus -> Utils.setResponseStatus(response,
+				dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData()));
+	}
+}
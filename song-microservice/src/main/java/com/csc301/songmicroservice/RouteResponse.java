@@ -0,0 +1,63 @@
+package com.csc301.songmicroservice;
+
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The response body of the busiest routes, which serializes to exactly the same JSON as the map built by
+ * Utils.setResponseStatus. The properties are written in the order a HashMap of them iterates in, data is left out
+ * when there is none, and the status is written as the name of its HttpStatus. Jackson resolves the serializer of this
+ * class once and reuses it, where each map needs its keys and values looked up on every request.
+ */
+@JsonPropertyOrder({ "path", "data", "status" })
+public class RouteResponse {
+
+	private static final String STATUS_OK = HttpStatus.OK.name();
+	private static final String STATUS_NOT_FOUND = HttpStatus.NOT_FOUND.name();
+	private static final String STATUS_INTERNAL_SERVER_ERROR = HttpStatus.INTERNAL_SERVER_ERROR.name();
+
+	private final String path;
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final Object data;
+
+	private final String status;
+
+	/**
+	 * @param path the method and URL the request was sent to
+	 * @param dbQueryExecResult the result of the operation performed for the request
+	 * @param data the data found by the operation, which is only sent back if it succeeded
+	 */
+	public RouteResponse(String path, DbQueryExecResult dbQueryExecResult, Object data) {
+		this.path = path;
+
+		switch (dbQueryExecResult) {
+		case QUERY_OK:
+			this.status = STATUS_OK;
+			this.data = data;
+			break;
+		case QUERY_ERROR_NOT_FOUND:
+			this.status = STATUS_NOT_FOUND;
+			this.data = null;
+			break;
+		default:
+			this.status = STATUS_INTERNAL_SERVER_ERROR;
+			this.data = null;
+			break;
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public Object getData() {
+		return data;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+}
@@ -20,9 +20,20 @@ public class Song {
 	private String songAlbum;
 	private long songAmountFavourites;
 	
+	// The change to this song that still has to be sent to the Profile Microservice, stored with the song so both are written together
+	@JsonIgnore
+	private String outboxEvent;
+	@JsonIgnore
+	private int outboxAttempts;
+	@JsonIgnore
+	private long outboxNextAttemptAt;
+	
 	public static final String KEY_SONG_NAME = "songName";
 	public static final String KEY_SONG_ARTIST_FULL_NAME = "songArtistFullName";
 	public static final String KEY_SONG_ALBUM = "songAlbum";	
+	
+	public static final String OUTBOX_EVENT_ADD = "ADD";
+	public static final String OUTBOX_EVENT_DELETE = "DELETE";
 
 
 	public Song(String songName, String songArtistFullName, String songAlbum) {
@@ -64,6 +75,30 @@ public class Song {
 		this.songAmountFavourites = songAmountFavourites;
 	}
 
+	public String getOutboxEvent() {
+		return outboxEvent;
+	}
+
+	public void setOutboxEvent(String outboxEvent) {
+		this.outboxEvent = outboxEvent;
+	}
+
+	public int getOutboxAttempts() {
+		return outboxAttempts;
+	}
+
+	public void setOutboxAttempts(int outboxAttempts) {
+		this.outboxAttempts = outboxAttempts;
+	}
+
+	public long getOutboxNextAttemptAt() {
+		return outboxNextAttemptAt;
+	}
+
+	public void setOutboxNextAttemptAt(long outboxNextAttemptAt) {
+		this.outboxNextAttemptAt = outboxNextAttemptAt;
+	}
+
 	// ObjectId needs to be converted to string
 	public String getId() {
 		return _id.toHexString();
@@ -1,20 +1,25 @@
 package com.csc301.songmicroservice;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
-import okhttp3.Call;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -26,28 +31,35 @@ public class SongController {
 	@Autowired
 	private final SongDal songDal;
 
-	OkHttpClient client = new OkHttpClient();
+	// Reads each line of a bulk song import into a map of the song's properties
+	private final ObjectReader songReader;
+
+	// The number of imported songs inserted into the MongoDB at a time
+	@Value("${import.batchSize:1000}")
+	private int importBatchSize;
 
-	public SongController(SongDal songDal) {
+	public SongController(SongDal songDal, ObjectMapper mapper) {
 		this.songDal = songDal;
+		this.songReader = mapper.readerFor(Map.class);
 	}
 
 	/**
-	 * Controls and handles the route for /getSongById/{songId} (GET), and returns the title, artist name,
-	 * album name, and number of favourites for the song.
+	 * Controls and handles the route for /deleteSongById/{songId} (DELETE), deleting the song from all databases
+	 * and playlists in which it appeared. The deletion is sent to the Neo4jDB in the background by the
+	 * SongOutboxDispatcher, so this returns as soon as the MongoDB write is done.
 	 * 
 	 * @param songId the ObjectID of the song in the MongoDB
 	 * @param request the HttpServlet representing from where the request was sent
 	 * @return the response body for the request, with status and data keys
 	 */
-	@RequestMapping(value = "/getSongById/{songId}", method = RequestMethod.GET)
-	public @ResponseBody Map<String, Object> getSongById(@PathVariable("songId") String songId,
+	@RequestMapping(value = "/deleteSongById/{songId}", method = RequestMethod.DELETE)
+	public @ResponseBody Map<String, Object> deleteSongById(@PathVariable("songId") String songId,
 			HttpServletRequest request) {
 
 		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("path", String.format("GET %s", Utils.getUrl(request)));
+		response.put("path", String.format("DELETE %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = songDal.findSongById(songId);
+		DbQueryStatus dbQueryStatus = songDal.deleteSongById(songId);
 
 		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
 
@@ -55,113 +67,131 @@ public class SongController {
 	}
 
 	/**
-	 * Controls and handles the route for /getSongTitleById/{songId} (GET), and returns the title of the
-	 * song with the given ID.
+	 * Controls and handles the route for /addSong (POST), adding the song to the MongoDB, along with an outbox event
+	 * that the SongOutboxDispatcher sends to the Profile Microservice in the background to add it to the Neo4jDB as well.
 	 * 
-	 * @param songId the ObjectID of the song in the MongoDB
+	 * @param params a map of the query parameters required for this route (songName, songArtistFullName and songAlbum)
 	 * @param request the HttpServlet representing from where the request was sent
 	 * @return the response body for the request, with status and data keys
 	 */
-	@RequestMapping(value = "/getSongTitleById/{songId}", method = RequestMethod.GET)
-	public @ResponseBody Map<String, Object> getSongTitleById(@PathVariable("songId") String songId,
+	@RequestMapping(value = "/addSong", method = RequestMethod.POST)
+	public @ResponseBody Map<String, Object> addSong(@RequestParam Map<String, String> params,
 			HttpServletRequest request) {
 
 		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("path", String.format("GET %s", Utils.getUrl(request)));
+		response.put("path", String.format("POST %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = songDal.getSongTitleById(songId);
+		String songName = params.get("songName");
+		String songArtistFullName = params.get("songArtistFullName");
+		String songAlbum = params.get("songAlbum");
 
-		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
+		Song songToAdd =  new Song(songName, songArtistFullName, songAlbum);
+		DbQueryStatus statusResult = this.songDal.addSong(songToAdd);
+		
+		response = Utils.setResponseStatus(response, statusResult.getdbQueryExecResult(), statusResult.getData());
 
 		return response;
+
 	}
 
 	/**
-	 * Controls and handles the route for /deleteSongById/{songId} (DELETE), deleting the song from all databases
-	 * and playlists in which it appeared.
+	 * Controls and handles the route for /importSongs (POST), adding every song in a newline-delimited JSON body to the
+	 * MongoDB. Each line is a JSON object with songName, songArtistFullName and songAlbum keys. The body is read one line
+	 * at a time and the songs are inserted in batches, so the whole catalogue is never held in memory, and the
+	 * SongOutboxDispatcher sends the new songs to the Neo4jDB in the background.
 	 * 
-	 * @param songId the ObjectID of the song in the MongoDB
-	 * @param request the HttpServlet representing from where the request was sent
-	 * @return the response body for the request, with status and data keys
+	 * @param request the HttpServlet representing from where the request was sent, whose body holds the songs
+	 * @return the response body for the request, with status and data keys, where data holds the number of songs imported
+	 * and the number of lines rejected for being malformed or missing a parameter
+	 * @throws IOException if the request body can't be read
 	 */
-	@RequestMapping(value = "/deleteSongById/{songId}", method = RequestMethod.DELETE)
-	public @ResponseBody Map<String, Object> deleteSongById(@PathVariable("songId") String songId,
-			HttpServletRequest request) {
+	@RequestMapping(value = "/importSongs", method = RequestMethod.POST)
+	public @ResponseBody Map<String, Object> importSongs(HttpServletRequest request) throws IOException {
 
 		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("path", String.format("DELETE %s", Utils.getUrl(request)));
+		response.put("path", String.format("POST %s", Utils.getUrl(request)));
 
-		DbQueryStatus dbQueryStatus = songDal.deleteSongById(songId);
+		List<Song> batch = new ArrayList<Song>(importBatchSize);
+		long imported = 0;
+		long rejected = 0;
+		DbQueryStatus statusResult = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 
-		if (dbQueryStatus.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
-			
-			String path = String.format("http://localhost:3002/deleteAllSongsFromDb/%s", songId);
+		BufferedReader body = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+		String line;
 
-			Request okRequest = new Request.Builder().url(path).method("PUT", RequestBody.create(new byte[0], null)).build();
+		while ((line = body.readLine()) != null && statusResult.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			Song songToAdd = readImportedSong(line);
 
-			Call call = client.newCall(okRequest);
+			if (songToAdd == null) {
+				rejected++;
+				continue;
+			}
 
-			Response responseFromPMS = null;
+			batch.add(songToAdd);
 
-			try {
-				responseFromPMS = call.execute();
-			} catch (IOException e) {
-				e.printStackTrace();
+			if (batch.size() == importBatchSize) {
+				statusResult = this.songDal.addSongs(batch);
+
+				// A batch that failed was not inserted, so only the batches before it count as imported
+				if (statusResult.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
+					imported += batch.size();
+				}
+				batch = new ArrayList<Song>(importBatchSize);
 			}
+		}
 
+		if (!batch.isEmpty() && statusResult.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
+			statusResult = this.songDal.addSongs(batch);
+
+			if (statusResult.getdbQueryExecResult() == DbQueryExecResult.QUERY_OK) {
+				imported += batch.size();
+			}
 		}
 
-		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
+		Map<String, Long> data = new HashMap<String, Long>();
+		data.put("imported", imported);
+		data.put("rejected", rejected);
+
+		response = Utils.setResponseStatus(response, statusResult.getdbQueryExecResult(), data);
 
 		return response;
 	}
 
 	/**
-	 * Controls and handles the route for /addSong (POST), adding the song to the MongoDB, and sending
-	 * a request to add it to the Neo4jDB as well.
+	 * Reads a song from one line of a bulk song import
 	 * 
-	 * @param songId the ObjectID of the song in the MongoDB
-	 * @param request the HttpServlet representing from where the request was sent
-	 * @return the response body for the request, with status and data keys
+	 * @param line a JSON object with songName, songArtistFullName and songAlbum keys
+	 * @return the song, or null if the line is malformed, is not a JSON object, or any of the parameters are missing or
+	 * empty
 	 */
-	@RequestMapping(value = "/addSong", method = RequestMethod.POST)
-	public @ResponseBody Map<String, Object> addSong(@RequestParam Map<String, String> params,
-			HttpServletRequest request) {
-
-		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("path", String.format("POST %s", Utils.getUrl(request)));
-
-		String songName = params.get("songName");
-		String songArtistFullName = params.get("songArtistFullName");
-		String songAlbum = params.get("songAlbum");
-
-		Song songToAdd =  new Song(songName, songArtistFullName, songAlbum);
-		DbQueryStatus statusResult = this.songDal.addSong(songToAdd);
-		
-		if (statusResult.getdbQueryExecResult() == 	DbQueryExecResult.QUERY_OK) {
-			
-			String songID = ((Map<String, String>) (statusResult.getData())).get("id");
-			
-			String path = String.format("http://localhost:3002/addSong/%s", songID);
-
-			Request okRequest = new Request.Builder().url(path).method("PUT", RequestBody.create(new byte[0], null)).build();
-
-			Call call = client.newCall(okRequest);
+	private Song readImportedSong(String line) {
+		Map<String, Object> params;
+
+		// A line that is JSON but not an object, such as null or an array, is rejected like a malformed one
+		try {
+			params = songReader.readValue(line);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
 
-			Response responseFromPMS = null;
+		if (params == null) {
+			return null;
+		}
 
-			try {
-				responseFromPMS = call.execute();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		Object songName = params.get(Song.KEY_SONG_NAME);
+		Object songArtistFullName = params.get(Song.KEY_SONG_ARTIST_FULL_NAME);
+		Object songAlbum = params.get(Song.KEY_SONG_ALBUM);
 
+		if (songName == null || songArtistFullName == null || songAlbum == null || songName.toString().isEmpty()
+				|| songArtistFullName.toString().isEmpty() || songAlbum.toString().isEmpty()) {
+			return null;
 		}
-		
-		response = Utils.setResponseStatus(response, statusResult.getdbQueryExecResult(), statusResult.getData());
-
-		return response;
 
+		return new Song(songName.toString(), songArtistFullName.toString(), songAlbum.toString());
 	}
 
 	/**
@@ -187,4 +217,34 @@ public class SongController {
 
 		return response;
 	}
+
+	/**
+	 * Controls and handles the route for /updateSongFavouritesCounts (PUT), changing the favourites counts of many songs
+	 * at once by the given signed deltas, and returning the result for each song
+	 * 
+	 * @param favouritesDeltas a JSON object with the ObjectIDs of the songs in the MongoDB as keys, and the change to each
+	 * song's favourites count as values
+	 * @param clampNegative whether a count that would go negative should be set to zero ("true", the default) or have its
+	 * delta rejected ("false")
+	 * @param batchId an id the sender gives the batch, so that a batch sent again with the same batchId is dropped rather
+	 * than applied twice (optional)
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/updateSongFavouritesCounts", method = RequestMethod.PUT)
+	public @ResponseBody Map<String, Object> updateFavouritesCounts(@RequestBody Map<String, Long> favouritesDeltas,
+			@RequestParam(value = "clampNegative", defaultValue = "true") String clampNegative,
+			@RequestParam(value = "batchId", required = false) String batchId, HttpServletRequest request) {
+
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", String.format("PUT %s", Utils.getUrl(request)));
+
+		boolean clampAsBoolean = clampNegative.equals("true");
+
+		DbQueryStatus statusResult = this.songDal.updateSongFavouritesCounts(batchId, favouritesDeltas,
+				clampAsBoolean);
+		response = Utils.setResponseStatus(response, statusResult.getdbQueryExecResult(), statusResult.getData());
+
+		return response;
+	}
 }
\ No newline at end of file
@@ -1,9 +1,15 @@
 package com.csc301.songmicroservice;
 
+import java.util.List;
+import java.util.Map;
+
 public interface SongDal {
 	DbQueryStatus addSong(Song songToAdd);
+	DbQueryStatus addSongs(List<Song> songsToAdd);
 	DbQueryStatus findSongById(String songId);
 	DbQueryStatus getSongTitleById(String songId);
+	DbQueryStatus getSongTitlesByIds(List<String> songIds);
 	DbQueryStatus deleteSongById(String songId);	
 	DbQueryStatus updateSongFavouritesCount(String songId, boolean shouldDecrement);
+	DbQueryStatus updateSongFavouritesCounts(String batchId, Map<String, Long> favouritesDeltas, boolean clampNegative);
 }
@@ -1,28 +1,88 @@
 package com.csc301.songmicroservice;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import org.bson.Document;
 import org.bson.types.ObjectId;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Repository
 public class SongDalImpl implements SongDal {
 
+	// The results of changing a song's favourites count through updateSongFavouritesCounts
+	public static final String FAVOURITES_APPLIED = "APPLIED";
+	public static final String FAVOURITES_CLAMPED = "CLAMPED";
+	public static final String FAVOURITES_REJECTED = "REJECTED";
+	public static final String FAVOURITES_NOT_FOUND = "NOT_FOUND";
+	public static final String FAVOURITES_DUPLICATE = "DUPLICATE";
+	public static final String FAVOURITES_ERROR = "ERROR";
+
+	// The collection recording the batches of favourites changes that have been applied, keyed by batchId
+	static final String FAVOURITES_BATCHES_COLLECTION = "favouritesBatches";
+
+	// The field of each song listing the batchIds of the latest batches of favourites changes applied to it
+	static final String FAVOURITES_BATCH_IDS = "favouritesBatchIds";
+
 	private final MongoTemplate db;
 
+	private final MeterRegistry meterRegistry;
+
+	// The number of seconds an applied batch of favourites changes is remembered for
+	private final long favouritesBatchRetainSeconds;
+
+	// The number of batchIds each song remembers, so that a batch resent before that many others changed it is dropped
+	private final int favouritesBatchIdsPerSong;
+
+	// Keeps track of whether the index expiring the recorded batches has been created
+	private volatile boolean favouritesBatchIndexCreated = false;
+
+	/**
+	 * Creates the data access layer of the songs. The time taken by each call to the MongoDB is published as the
+	 * "mongodb.operations" metric, tagged with the operation and the exception it threw, if any.
+	 *
+	 * @param mongoTemplate the template the songs are read and written through
+	 * @param meterRegistry the registry the timings are published to
+	 * @param favouritesBatchRetainSeconds the number of seconds an applied batch of favourites changes is remembered for
+	 * @param favouritesBatchIdsPerSong the number of batchIds of the latest batches applied to it each song remembers
+	 */
 	@Autowired
-	public SongDalImpl(MongoTemplate mongoTemplate) {
+	public SongDalImpl(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+			@Value("${favourites.batchRetainSeconds:86400}") long favouritesBatchRetainSeconds,
+			@Value("${favourites.batchIdsPerSong:100}") int favouritesBatchIdsPerSong) {
 		this.db = mongoTemplate;
+		this.meterRegistry = meterRegistry;
+		this.favouritesBatchRetainSeconds = favouritesBatchRetainSeconds;
+		this.favouritesBatchIdsPerSong = favouritesBatchIdsPerSong;
 	}
 	
 	/**
-	 * Handles inserting a Song object into the MongoDB, checking whether all parameters are non-empty.
+	 * Handles inserting a Song object into the MongoDB, checking whether all parameters are non-empty. The song is
+	 * written together with an outbox event, which is later sent to the Profile Microservice by the SongOutboxDispatcher.
 	 * 
 	 * @param songToAdd the song to be inserted
 	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
@@ -38,7 +98,8 @@ public class SongDalImpl implements SongDal {
 			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
 
-			this.db.insert(songToAdd);
+			songToAdd.setOutboxEvent(Song.OUTBOX_EVENT_ADD);
+			timed("insertSong", () -> this.db.insert(songToAdd));
 			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 			toReturn.setData(songToAdd.getJsonRepresentation());
 
@@ -47,6 +108,36 @@ public class SongDalImpl implements SongDal {
 		return toReturn;
 	}
 
+	/**
+	 * Handles inserting many Song objects into the MongoDB with a single insertMany. Each song is written together with
+	 * an outbox event, and the SongOutboxDispatcher sends the new songs to the Profile Microservice in batches.
+	 * 
+	 * @param songsToAdd the songs to be inserted, which must all have non-empty parameters
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the number of songs inserted
+	 */
+	@Override
+	public DbQueryStatus addSongs(List<Song> songsToAdd) {
+
+		boolean checkNull = songsToAdd == null || songsToAdd.isEmpty();
+		DbQueryStatus toReturn;
+
+		if (checkNull) {
+			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else {
+
+			for (Song songToAdd : songsToAdd) {
+				songToAdd.setOutboxEvent(Song.OUTBOX_EVENT_ADD);
+			}
+
+			timed("insertSongs", () -> this.db.insert(songsToAdd, Song.class));
+			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(songsToAdd.size());
+
+		}
+
+		return toReturn;
+	}
+
 	/**
 	 * Handles finding a Song object in the MongoDB given its ObjectID.
 	 * 
@@ -63,10 +154,9 @@ public class SongDalImpl implements SongDal {
 			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
 
-			Query query = new Query();
-			query.addCriteria(Criteria.where("_id").is(songId));
+			Query query = liveSong(songId);
 
-			List<Song> songToFind = this.db.find(query, Song.class);
+			List<Song> songToFind = timed("findSong", () -> this.db.find(query, Song.class));
 
 			if (songToFind.size() == 0) {
 				toReturn = new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
@@ -105,7 +195,43 @@ public class SongDalImpl implements SongDal {
 	}
 	
 	/**
-	 * Handles deleting a song from the MongoDB given its ObjectID.
+	 * Handles finding the titles of many songs in the MongoDB with a single query, given their ObjectIDs. Only the
+	 * songName field is read from each matching document.
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the database
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing a map of the found
+	 * titles keyed by ObjectID, and a list of the ObjectIDs that were not found
+	 */
+	@Override
+	public DbQueryStatus getSongTitlesByIds(List<String> songIds) {
+
+		boolean checkNull = songIds == null || songIds.isEmpty();
+		DbQueryStatus toReturn;
+
+		if (checkNull) {
+			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else {
+
+			Map<String, String> titlesFound = new HashMap<String, String>();
+
+			for (Song song : timed("findSongTitles", () -> this.db.find(songTitlesQuery(songIds), Song.class))) {
+				titlesFound.put(song.getId(), song.getSongName());
+			}
+
+			Map<String, Object> data = titlesInRequestedOrder(songIds, titlesFound);
+
+			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(data);
+
+		}
+
+		return toReturn;
+	}
+
+	/**
+	 * Handles deleting a song from the MongoDB given its ObjectID. The song is hidden from all reads straight away by
+	 * recording a delete outbox event on it, and the SongOutboxDispatcher removes the document once the deletion has been
+	 * sent to the Profile Microservice.
 	 * 
 	 * @param songId the ObjectID of the song in the database
 	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
@@ -119,10 +245,11 @@ public class SongDalImpl implements SongDal {
 		if (checkNull) {
 			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
-			Query query = new Query();
-			query.addCriteria(Criteria.where("_id").is(songId));
+			Update update = new Update().set("outboxEvent", Song.OUTBOX_EVENT_DELETE).set("outboxAttempts", 0)
+					.set("outboxNextAttemptAt", 0L);
 
-			long deletedResult = this.db.remove(query, Song.class).getDeletedCount();
+			long deletedResult = timed("markSongDeleted",
+					() -> this.db.updateFirst(liveSong(songId), update, Song.class)).getMatchedCount();
 
 			if (deletedResult == 0) {
 				toReturn = new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
@@ -136,31 +263,23 @@ public class SongDalImpl implements SongDal {
 	}
 	
 	/**
-	 * Handles incrementing/decrementing the favourites count of a song in the MongoDB.
+	 * Handles incrementing/decrementing the favourites count of a song in the MongoDB. The update is applied atomically
+	 * on the server with a single $inc, and decrements are guarded so that the count can never go below zero.
 	 * 
 	 * @param songId the ObjectID of the song in the database
 	 * @param shouldDecrement the boolean value of whether the count should be incremented or decremented
-	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w)
+	 * @return the DbQueryStatus of the operation performed (OK for success, non OK o/w), containing the new favourites count
 	 */
 	@Override
 	public DbQueryStatus updateSongFavouritesCount(String songId, boolean shouldDecrement) {
 
-		DbQueryStatus songFromID = findSongById(songId);
+		boolean checkNull = songId.isEmpty();
 		DbQueryStatus toReturn;
 
-		if (!(songFromID.getMessage().equals("OK"))) {
-			toReturn = new DbQueryStatus(songFromID.getMessage(), songFromID.getdbQueryExecResult());
+		if (checkNull) {
+			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
 		} else {
 
-			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
-
-			HashMap<String, String> mapFromQuery = (HashMap<String, String>) songFromID.getData();
-
-			Song songFromQuery = new Song(mapFromQuery.get("songName"), mapFromQuery.get("songArtistFullName"),
-					mapFromQuery.get("songAlbum"));
-			songFromQuery.setSongAmountFavourites(Long.valueOf(mapFromQuery.get("songAmountFavourites")));
-			songFromQuery.setId(new ObjectId(mapFromQuery.get("id")));
-
 			int change;
 
 			if (shouldDecrement) {
@@ -169,18 +288,346 @@ public class SongDalImpl implements SongDal {
 				change = 1;
 			}
 
-			if (songFromQuery.getSongAmountFavourites() + change < 0) {
+			Query query = liveSong(songId);
+
+			// Only match the song for a decrement if the count would stay non-negative
+			if (shouldDecrement) {
+				query.addCriteria(Criteria.where("songAmountFavourites").gte(1));
+			}
+
+			Update update = new Update().inc("songAmountFavourites", change);
+
+			Song updatedSong = timed("updateFavouritesCount", () -> this.db.findAndModify(query, update,
+					FindAndModifyOptions.options().returnNew(true), Song.class));
+
+			if (updatedSong != null) {
+				toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+				toReturn.setData(updatedSong.getSongAmountFavourites());
+			} else if (shouldDecrement && timed("songExists", () -> this.db.exists(liveSong(songId), Song.class))) {
+				// The song exists, so the guard on the count is what rejected the decrement
 				toReturn = new DbQueryStatus("INVALID_OPERATION", DbQueryExecResult.QUERY_ERROR_GENERIC);
 			} else {
-				songFromQuery.setSongAmountFavourites(songFromQuery.getSongAmountFavourites() + change);
-				this.db.save(songFromQuery);
+				toReturn = new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
+			}
+
+		}
+
+		return toReturn;
+	}
+
+	/**
+	 * Handles changing the favourites counts of many songs in the MongoDB at once, applying every signed delta in a
+	 * single unordered update. A negative delta is only applied if the count would stay non-negative; otherwise the
+	 * count is clamped to zero, or the delta is rejected if clampNegative is false. A song without a delta is rejected.
+	 * 
+	 * A batch sent with a batchId is applied at most once to each song, as each song's update also adds the batchId to
+	 * the song's latest favourites.batchIdsPerSong batchIds, and is skipped if it is already there. A batch that failed
+	 * part way, or whose response was lost, can therefore be sent again, and is only applied to the songs it was not
+	 * applied to yet. Once every song's update succeeded the batchId is also recorded in the favouritesBatches
+	 * collection, so that the whole batch is dropped if it is sent again any time in favourites.batchRetainSeconds.
+	 * 
+	 * @param batchId the id the sender gave the batch, or null if the batch should always be applied
+	 * @param favouritesDeltas the change to the favourites count of each song, with the ObjectIDs of the songs as keys
+	 * @param clampNegative the boolean value of whether counts that would go negative should be set to zero
+	 * @return the DbQueryStatus of the operation performed (OK if every song's update succeeded, non OK o/w), containing
+	 * the result for each song (APPLIED, CLAMPED, REJECTED, NOT_FOUND, DUPLICATE if the batch was already applied to
+	 * the song, or ERROR if its update failed) with the ObjectIDs of the songs as keys
+	 */
+	@Override
+	public DbQueryStatus updateSongFavouritesCounts(String batchId, Map<String, Long> favouritesDeltas,
+			boolean clampNegative) {
+
+		boolean checkNull = favouritesDeltas == null || favouritesDeltas.isEmpty();
+		DbQueryStatus toReturn;
+
+		if (checkNull) {
+			toReturn = new DbQueryStatus("MISSING BODY PARAMETER", DbQueryExecResult.QUERY_ERROR_GENERIC);
+		} else if (batchId != null && favouritesBatchRecorded(batchId)) {
+
+			Map<String, String> results = new LinkedHashMap<String, String>();
+
+			for (String songId : favouritesDeltas.keySet()) {
+				results.put(songId, FAVOURITES_DUPLICATE);
+			}
+
+			toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(results);
+
+		} else {
 
+			Map<String, String> results = applyFavouritesDeltas(batchId, favouritesDeltas, clampNegative);
+
+			// The songs whose update failed are left for the batch to be sent again, which skips the rest
+			if (results.containsValue(FAVOURITES_ERROR)) {
+				toReturn = new DbQueryStatus("PARTIALLY APPLIED", DbQueryExecResult.QUERY_ERROR_GENERIC);
+			} else {
+				if (batchId != null) {
+					recordFavouritesBatch(batchId);
+				}
 				toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
 			}
+			toReturn.setData(results);
 
 		}
 
 		return toReturn;
 	}
 
+	/**
+	 * Checks whether the batch with the given batchId has already been applied to all of its songs
+	 * 
+	 * @param batchId the id the sender gave the batch
+	 * @return true, if the batch has been recorded as applied, false otherwise
+	 */
+	private boolean favouritesBatchRecorded(String batchId) {
+		return timed("findFavouritesBatch", () -> this.db.exists(new Query(Criteria.where("_id").is(batchId)),
+				FAVOURITES_BATCHES_COLLECTION));
+	}
+
+	/**
+	 * Records that the batch with the given batchId has been applied to all of its songs. Records expire
+	 * favourites.batchRetainSeconds after they are written, which must be longer than a sender keeps resending a batch.
+	 * 
+	 * @param batchId the id the sender gave the batch
+	 */
+	private void recordFavouritesBatch(String batchId) {
+		if (!favouritesBatchIndexCreated) {
+			timed("ensureFavouritesBatchIndex", () -> this.db.indexOps(FAVOURITES_BATCHES_COLLECTION).ensureIndex(
+					new Index().named("expiry").on("recordedAt", Direction.ASC).expire(favouritesBatchRetainSeconds)));
+			favouritesBatchIndexCreated = true;
+		}
+
+		try {
+			timed("recordFavouritesBatch", () -> this.db.insert(
+					new Document("_id", batchId).append("recordedAt", new Date()), FAVOURITES_BATCHES_COLLECTION));
+		} catch (DuplicateKeyException e) {
+			// The same batch was sent again while this one was being applied, and has been recorded already
+		}
+	}
+
+	/**
+	 * Applies the given changes to the favourites counts of the songs in a single unordered update command. The counts
+	 * of the songs are read first, in one query, to find the songs that exist and to tell how each change will be
+	 * applied. Each change is then one atomic update of its song: an increase is a plain $inc, a decrease that is
+	 * clamped sets the count to the $max of zero and the new count in an update pipeline (which needs MongoDB 4.2 or
+	 * later), and a decrease that may be rejected is an $inc guarded by the count. Given a batchId, each update is
+	 * guarded by the song's latest batchIds too, and adds the batchId to them.
+	 * 
+	 * A song changed by another update between the read and the write always ends up with the right count, but may be
+	 * reported as APPLIED when its change was clamped, rejected or a duplicate, or the other way round.
+	 * 
+	 * @param batchId the id the sender gave the batch, or null if the batch should always be applied
+	 * @param favouritesDeltas the change to the favourites count of each song, with the ObjectIDs of the songs as keys
+	 * @param clampNegative the boolean value of whether counts that would go negative should be set to zero
+	 * @return the result for each song, with the ObjectIDs of the songs as keys
+	 */
+	private Map<String, String> applyFavouritesDeltas(String batchId, Map<String, Long> favouritesDeltas,
+			boolean clampNegative) {
+
+		String collectionName = this.db.getCollectionName(Song.class);
+
+		Query countsQuery = new Query();
+		countsQuery.addCriteria(Criteria.where("_id").in(favouritesDeltas.keySet()));
+		countsQuery.addCriteria(Criteria.where("outboxEvent").ne(Song.OUTBOX_EVENT_DELETE));
+		countsQuery.fields().include("_id").include("songAmountFavourites").include(FAVOURITES_BATCH_IDS);
+
+		Map<String, Long> currentCounts = new HashMap<String, Long>();
+
+		// The songs the batch has already been applied to
+		Set<String> appliedSongIds = new HashSet<String>();
+
+		for (Document song : timed("findFavouritesCounts",
+				() -> this.db.find(countsQuery, Document.class, collectionName))) {
+			String songId = song.getObjectId("_id").toHexString();
+			Object count = song.get("songAmountFavourites");
+			currentCounts.put(songId, count instanceof Number ? ((Number) count).longValue() : 0L);
+
+			Object batchIds = song.get(FAVOURITES_BATCH_IDS);
+
+			if (batchId != null && batchIds instanceof List && ((List<?>) batchIds).contains(batchId)) {
+				appliedSongIds.add(songId);
+			}
+		}
+
+		Map<String, String> results = new LinkedHashMap<String, String>();
+		List<Document> updates = new ArrayList<Document>();
+
+		// The songs updated by each of the updates, in the same order
+		List<String> updatedSongIds = new ArrayList<String>();
+
+		for (Map.Entry<String, Long> favouritesDelta : favouritesDeltas.entrySet()) {
+			String songId = favouritesDelta.getKey();
+			Long change = favouritesDelta.getValue();
+			Long currentCount = currentCounts.get(songId);
+
+			if (change == null) {
+				results.put(songId, FAVOURITES_REJECTED);
+				continue;
+			}
+
+			if (currentCount == null) {
+				results.put(songId, FAVOURITES_NOT_FOUND);
+				continue;
+			}
+
+			if (appliedSongIds.contains(songId)) {
+				results.put(songId, FAVOURITES_DUPLICATE);
+				continue;
+			}
+
+			Document filter = new Document("_id", new ObjectId(songId)).append("outboxEvent",
+					new Document("$ne", Song.OUTBOX_EVENT_DELETE));
+
+			if (batchId != null) {
+				filter.append(FAVOURITES_BATCH_IDS, new Document("$ne", batchId));
+			}
+
+			Object update;
+
+			if (change >= 0) {
+				results.put(songId, FAVOURITES_APPLIED);
+				update = withBatchId(new Document("$inc", new Document("songAmountFavourites", change)), batchId);
+			} else if (clampNegative) {
+				results.put(songId, currentCount + change >= 0 ? FAVOURITES_APPLIED : FAVOURITES_CLAMPED);
+				Document clamped = new Document("songAmountFavourites", new Document("$max",
+						Arrays.asList(0L, new Document("$add", Arrays.asList("$songAmountFavourites", change)))));
+
+				// An update pipeline can't $push, so the batchId is appended to the song's batchIds by $concatArrays
+				if (batchId != null) {
+					Document batchIds = new Document("$ifNull",
+							Arrays.asList("$" + FAVOURITES_BATCH_IDS, Collections.emptyList()));
+					Document appended = new Document("$concatArrays",
+							Arrays.asList(batchIds, Collections.singletonList(new Document("$literal", batchId))));
+
+					clamped.append(FAVOURITES_BATCH_IDS,
+							new Document("$slice", Arrays.asList(appended, -favouritesBatchIdsPerSong)));
+				}
+				update = Collections.singletonList(new Document("$set", clamped));
+			} else if (currentCount + change >= 0) {
+				results.put(songId, FAVOURITES_APPLIED);
+				filter.append("songAmountFavourites", new Document("$gte", -change));
+				update = withBatchId(new Document("$inc", new Document("songAmountFavourites", change)), batchId);
+			} else {
+				// The count was too low to take the change, so the song is left as it is
+				results.put(songId, FAVOURITES_REJECTED);
+				continue;
+			}
+
+			updates.add(new Document("q", filter).append("u", update));
+			updatedSongIds.add(songId);
+		}
+
+		if (!updates.isEmpty()) {
+			Document updated = timed("updateFavouritesCounts", () -> this.db.executeCommand(
+					new Document("update", collectionName).append("updates", updates).append("ordered", false)));
+
+			// The updates are unordered, so the ones that did not fail have been applied whichever others failed
+			List<?> writeErrors = updated.get("writeErrors", List.class);
+
+			if (writeErrors != null) {
+				for (Object writeError : writeErrors) {
+					int index = ((Document) writeError).get("index", Number.class).intValue();
+					results.put(updatedSongIds.get(index), FAVOURITES_ERROR);
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Adds the given batchId to the latest batchIds of the song an update changes, keeping only the latest
+	 * favourites.batchIdsPerSong of them
+	 * 
+	 * @param update the update of the song's favourites count
+	 * @param batchId the id the sender gave the batch, or null if the batch should always be applied
+	 * @return the update
+	 */
+	private Document withBatchId(Document update, String batchId) {
+		if (batchId != null) {
+			update.append("$push", new Document(FAVOURITES_BATCH_IDS, new Document("$each",
+					Collections.singletonList(batchId)).append("$slice", -favouritesBatchIdsPerSong)));
+		}
+
+		return update;
+	}
+
+	/**
+	 * Runs the given call to the MongoDB, recording the time it took, whether or not it succeeded
+	 * 
+	 * @param operation the name of the operation, which the timing is tagged with
+	 * @param call the call to the MongoDB
+	 * @return the result of the call
+	 */
+	private <T> T timed(String operation, Supplier<T> call) {
+		long start = System.nanoTime();
+		String exception = "None";
+
+		try {
+			return call.get();
+		} catch (RuntimeException e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			meterRegistry.timer("mongodb.operations", "operation", operation, "exception", exception)
+					.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Builds the query for the titles of the given songs, which reads only the songName field of each song that has not
+	 * been deleted
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the database
+	 * @return the query
+	 */
+	static Query songTitlesQuery(List<String> songIds) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("_id").in(songIds));
+		query.addCriteria(Criteria.where("outboxEvent").ne(Song.OUTBOX_EVENT_DELETE));
+		query.fields().include("songName");
+
+		return query;
+	}
+
+	/**
+	 * Lists the found titles in the order they were asked for, and reports anything unmatched as missing
+	 * 
+	 * @param songIds the ObjectIDs of the songs that were asked for
+	 * @param titlesFound the titles that were found, keyed by ObjectID
+	 * @return a map of the found titles keyed by ObjectID, and a list of the ObjectIDs that were not found
+	 */
+	static Map<String, Object> titlesInRequestedOrder(List<String> songIds, Map<String, String> titlesFound) {
+		Map<String, String> titles = new LinkedHashMap<String, String>();
+		Set<String> missing = new LinkedHashSet<String>();
+
+		for (String songId : songIds) {
+			if (titlesFound.containsKey(songId)) {
+				titles.put(songId, titlesFound.get(songId));
+			} else {
+				missing.add(songId);
+			}
+		}
+
+		Map<String, Object> data = new HashMap<String, Object>();
+		data.put("titles", titles);
+		data.put("missing", new ArrayList<String>(missing));
+
+		return data;
+	}
+
+	/**
+	 * Builds a query matching the song with the given ObjectID, unless it is waiting to be removed after being deleted
+	 * 
+	 * @param songId the ObjectID of the song in the database
+	 * @return the query matching the song
+	 */
+	static Query liveSong(String songId) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("_id").is(songId));
+		query.addCriteria(Criteria.where("outboxEvent").ne(Song.OUTBOX_EVENT_DELETE));
+
+		return query;
+	}
+
 }
\ No newline at end of file
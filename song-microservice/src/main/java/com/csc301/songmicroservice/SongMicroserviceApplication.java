@@ -2,8 +2,10 @@ package com.csc301.songmicroservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SongMicroserviceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,142 @@
+package com.csc301.songmicroservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends the outbox events recorded on songs to the Profile Microservice in the background, so that adding or deleting a
+ * song only waits for the MongoDB write. Events are sent in batches, and a batch that fails is retried later with an
+ * exponential, jittered backoff.
+ */
+@Component
+public class SongOutboxDispatcher {
+
+	private final MongoTemplate db;
+
+	private final ProfileServiceClient profileServiceClient;
+
+	// The maximum number of songs sent to the Profile Microservice in one request
+	private final int batchSize;
+
+	// The delay before the first retry of a failed batch, doubled on every retry after that up to maxBackoffMillis
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	// Keeps track of whether the index used to find due outbox events has been created
+	private volatile boolean outboxIndexCreated = false;
+
+	public SongOutboxDispatcher(MongoTemplate mongoTemplate, ProfileServiceClient profileServiceClient,
+			@Value("${outbox.batchSize:500}") int batchSize,
+			@Value("${outbox.initialBackoffMillis:1000}") long initialBackoffMillis,
+			@Value("${outbox.maxBackoffMillis:60000}") long maxBackoffMillis) {
+		this.db = mongoTemplate;
+		this.profileServiceClient = profileServiceClient;
+		this.batchSize = batchSize;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	/**
+	 * Sends all the outbox events that are due, one batch after another, until there are none left or a batch fails
+	 */
+	@Scheduled(fixedDelayString = "${outbox.pollIntervalMillis:1000}")
+	public void dispatch() {
+		if (!outboxIndexCreated) {
+			this.db.indexOps(Song.class).ensureIndex(
+					new Index().named("outbox").on("outboxEvent", Direction.ASC).on("outboxNextAttemptAt", Direction.ASC));
+			outboxIndexCreated = true;
+		}
+
+		boolean more;
+
+		do {
+			more = dispatchBatch(Song.OUTBOX_EVENT_ADD);
+		} while (more);
+
+		do {
+			more = dispatchBatch(Song.OUTBOX_EVENT_DELETE);
+		} while (more);
+	}
+
+	/**
+	 * Sends one batch of the due outbox events of the given type to the Profile Microservice. Songs that were added are
+	 * cleared of their event once it is delivered, and songs that were deleted are removed from the MongoDB.
+	 * 
+	 * @param outboxEvent the type of outbox event to send
+	 * @return true, if a full batch was delivered and more events may be waiting, false otherwise
+	 */
+	boolean dispatchBatch(String outboxEvent) {
+		long now = System.currentTimeMillis();
+
+		Query dueQuery = new Query();
+		dueQuery.addCriteria(Criteria.where("outboxEvent").is(outboxEvent).and("outboxNextAttemptAt").lte(now));
+		dueQuery.fields().include("_id").include("outboxAttempts");
+		dueQuery.limit(batchSize);
+
+		List<Song> dueSongs = this.db.find(dueQuery, Song.class);
+
+		if (dueSongs.isEmpty()) {
+			return false;
+		}
+
+		List<String> songIds = new ArrayList<String>();
+		int attempts = 0;
+
+		for (Song song : dueSongs) {
+			songIds.add(song.getId());
+			attempts = Math.max(attempts, song.getOutboxAttempts());
+		}
+
+		// Only songs still carrying this event are updated, in case one was deleted while its add was being sent
+		Query batchQuery = new Query();
+		batchQuery.addCriteria(Criteria.where("_id").in(songIds).and("outboxEvent").is(outboxEvent));
+
+		boolean delivered;
+
+		if (outboxEvent.equals(Song.OUTBOX_EVENT_ADD)) {
+			delivered = profileServiceClient.addSongs(songIds);
+		} else {
+			delivered = profileServiceClient.deleteSongs(songIds);
+		}
+
+		if (!delivered) {
+			Update retry = new Update().inc("outboxAttempts", 1).set("outboxNextAttemptAt", now + backoff(attempts));
+			this.db.updateMulti(batchQuery, retry, Song.class);
+
+			return false;
+		}
+
+		if (outboxEvent.equals(Song.OUTBOX_EVENT_ADD)) {
+			Update delivery = new Update().unset("outboxEvent").unset("outboxAttempts").unset("outboxNextAttemptAt");
+			this.db.updateMulti(batchQuery, delivery, Song.class);
+		} else {
+			this.db.remove(batchQuery, Song.class);
+		}
+
+		return dueSongs.size() == batchSize;
+	}
+
+	/**
+	 * Finds how long to wait before retrying a batch, picked at random from the upper half of an exponentially growing
+	 * window so that retries of different batches are spread out
+	 * 
+	 * @param attempts the number of times the batch has already failed
+	 * @return the number of milliseconds to wait before the next attempt
+	 */
+	private long backoff(int attempts) {
+		long window = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts, 20));
+
+		return window / 2 + ThreadLocalRandom.current().nextLong(window / 2 + 1);
+	}
+}
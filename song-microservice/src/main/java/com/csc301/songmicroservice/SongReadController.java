@@ -0,0 +1,91 @@
+package com.csc301.songmicroservice;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The read routes of the Song Microservice, served from the MongoDB through the blocking SongDal. They are replaced by
+ * the ReactiveSongReadController when the "reactive" profile is active.
+ */
+@RestController
+@RequestMapping("/")
+@Profile("!reactive")
+public class SongReadController {
+
+	@Autowired
+	private final SongDal songDal;
+
+	public SongReadController(SongDal songDal) {
+		this.songDal = songDal;
+	}
+
+	/**
+	 * Controls and handles the route for /getSongById/{songId} (GET), and returns the title, artist name,
+	 * album name, and number of favourites for the song.
+	 * 
+	 * @param songId the ObjectID of the song in the MongoDB
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongById/{songId}", method = RequestMethod.GET)
+	public @ResponseBody RouteResponse getSongById(@PathVariable("songId") String songId,
+			HttpServletRequest request) {
+
+		DbQueryStatus dbQueryStatus = songDal.findSongById(songId);
+
+		return new RouteResponse(String.format("GET %s", Utils.getUrl(request)), dbQueryStatus.getdbQueryExecResult(),
+				dbQueryStatus.getData());
+	}
+
+	/**
+	 * Controls and handles the route for /getSongTitleById/{songId} (GET), and returns the title of the
+	 * song with the given ID.
+	 * 
+	 * @param songId the ObjectID of the song in the MongoDB
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongTitleById/{songId}", method = RequestMethod.GET)
+	public @ResponseBody RouteResponse getSongTitleById(@PathVariable("songId") String songId,
+			HttpServletRequest request) {
+
+		DbQueryStatus dbQueryStatus = songDal.getSongTitleById(songId);
+
+		return new RouteResponse(String.format("GET %s", Utils.getUrl(request)), dbQueryStatus.getdbQueryExecResult(),
+				dbQueryStatus.getData());
+	}
+
+	/**
+	 * Controls and handles the route for /getSongTitlesByIds (POST), and returns the titles of all the songs with the
+	 * given IDs, along with the IDs that could not be found.
+	 * 
+	 * @param songIds the ObjectIDs of the songs in the MongoDB, as a JSON array
+	 * @param request the HttpServlet representing from where the request was sent
+	 * @return the response body for the request, with status and data keys
+	 */
+	@RequestMapping(value = "/getSongTitlesByIds", method = RequestMethod.POST)
+	public @ResponseBody Map<String, Object> getSongTitlesByIds(
+			@RequestBody List<String> songIds, HttpServletRequest request) {
+
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", String.format("POST %s", Utils.getUrl(request)));
+
+		DbQueryStatus dbQueryStatus = songDal.getSongTitlesByIds(songIds);
+
+		response = Utils.setResponseStatus(response, dbQueryStatus.getdbQueryExecResult(), dbQueryStatus.getData());
+
+		return response;
+	}
+}
@@ -0,0 +1,45 @@
+package com.csc301.songmicroservice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Times every call an OkHttp client makes, from when it is sent until its response headers arrive, as the
+ * "okhttp.requests" metric. Each timing is tagged with the client, the method, the route called (the first segment of
+ * the path, so that IDs in the path don't each get a timer of their own), and the response code, or IO_ERROR if the
+ * call failed without one.
+ */
+public class TimingInterceptor implements Interceptor {
+
+	private final MeterRegistry meterRegistry;
+
+	private final String clientName;
+
+	public TimingInterceptor(MeterRegistry meterRegistry, String clientName) {
+		this.meterRegistry = meterRegistry;
+		this.clientName = clientName;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		long start = System.nanoTime();
+		String status = "IO_ERROR";
+
+		try {
+			Response response = chain.proceed(request);
+			status = String.valueOf(response.code());
+
+			return response;
+		} finally {
+			meterRegistry.timer("okhttp.requests", "client", clientName, "method", request.method(), "route",
+					"/" + request.url().pathSegments().get(0), "status", status)
+					.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.csc301.songmicroservice;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import okhttp3.Dispatcher;
+
+/**
+ * Serves requests on virtual threads instead of Tomcat's pool of platform threads when virtualThreads.enabled is set.
+ * The same executor runs the asynchronous OkHttp calls to the Profile Microservice. Request handling code is unchanged, as
+ * blocking on the MongoDB, Neo4j or OkHttp only parks the virtual thread it runs on. Virtual threads need Java 21 or
+ * later, so the executor is created reflectively, and the service fails to start if they are enabled on an older Java.
+ */
+@Configuration
+@ConditionalOnProperty(name = "virtualThreads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+	/**
+	 * Creates the executor that starts a new virtual thread for every task, which is shut down by the
+	 * virtualThreadExecutorShutdown lifecycle rather than when the beans are destroyed
+	 *
+	 * @return the executor
+	 */
+	@Bean(destroyMethod = "")
+	public ExecutorService virtualThreadExecutor() {
+		try {
+			Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("virtualThreads.enabled requires Java 21 or later, but this is Java "
+					+ System.getProperty("java.version"), e);
+		}
+	}
+
+	/**
+	 * Hands the requests accepted by Tomcat to the virtual thread executor
+	 *
+	 * @param virtualThreadExecutor the executor that starts a new virtual thread for every task
+	 * @return the customizer of the Tomcat server
+	 */
+	@Bean
+	public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer(
+			ExecutorService virtualThreadExecutor) {
+		return factory -> factory.addConnectorCustomizers(
+				connector -> connector.getProtocolHandler().setExecutor(virtualThreadExecutor));
+	}
+
+	/**
+	 * Creates the lifecycle that shuts the virtual thread executor down once the web server has stopped
+	 *
+	 * @param applicationContext the context the web server belongs to
+	 * @param virtualThreadExecutor the executor that starts a new virtual thread for every task
+	 * @param shutdownTimeoutSeconds the number of seconds running requests are given to finish
+	 * @return the lifecycle
+	 */
+	@Bean
+	public SmartLifecycle virtualThreadExecutorShutdown(ApplicationContext applicationContext,
+			ExecutorService virtualThreadExecutor,
+			@Value("${virtualThreads.shutdownTimeoutSeconds:30}") long shutdownTimeoutSeconds) {
+		return new ExecutorShutdown(applicationContext, virtualThreadExecutor, shutdownTimeoutSeconds);
+	}
+
+	/**
+	 * Creates the dispatcher an OkHttp client runs its asynchronous calls on, which uses the virtual thread executor if
+	 * virtual threads are enabled, and OkHttp's own thread pool otherwise
+	 *
+	 * @param virtualThreadExecutor the executor that starts a new virtual thread for every task, if there is one
+	 * @return the dispatcher
+	 */
+	public static Dispatcher okHttpDispatcher(ObjectProvider<ExecutorService> virtualThreadExecutor) {
+		ExecutorService executor = virtualThreadExecutor.getIfAvailable();
+		return executor == null ? new Dispatcher() : new Dispatcher(executor);
+	}
+
+	/**
+	 * Shuts the virtual thread executor down when the service stops. Spring Boot 2.1 stops the embedded Tomcat only after
+	 * the beans have been destroyed, so shutting the executor down as a bean would make requests that arrive in between
+	 * fail with a RejectedExecutionException. This lifecycle is stopped before the beans are destroyed, so it stops the
+	 * web server itself first (stopping it again later does nothing), and then lets the running requests finish.
+	 */
+	private static class ExecutorShutdown implements SmartLifecycle {
+		private final ApplicationContext applicationContext;
+		private final ExecutorService executor;
+		private final long shutdownTimeoutSeconds;
+
+		// Keeps track of whether the lifecycle has been started and not yet stopped
+		private volatile boolean running = false;
+
+		private ExecutorShutdown(ApplicationContext applicationContext, ExecutorService executor,
+				long shutdownTimeoutSeconds) {
+			this.applicationContext = applicationContext;
+			this.executor = executor;
+			this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+		}
+
+		@Override
+		public void start() {
+			running = true;
+		}
+
+		@Override
+		public void stop() {
+			if (applicationContext instanceof WebServerApplicationContext) {
+				WebServer webServer = ((WebServerApplicationContext) applicationContext).getWebServer();
+
+				if (webServer != null) {
+					webServer.stop();
+				}
+			}
+
+			executor.shutdown();
+
+			try {
+				executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running = false;
+			}
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public int getPhase() {
+			// Stopped before every other lifecycle, as the requests still running may depend on them
+			return Integer.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.csc301.songmicroservice;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CachingSongDalTests {
+
+	private static final String SONG_ID = "5d61728193528481fe5a3122";
+	private static final String MISSING_SONG_ID = "5d61728193528481fe5a3123";
+
+	private CountingSongDal songDal;
+	private CachingSongDal cachingSongDal;
+
+	@Before
+	public void setUp() {
+		songDal = new CountingSongDal();
+		cachingSongDal = new CachingSongDal(songDal, 100, 600, 5, new SimpleMeterRegistry());
+	}
+
+	@Test
+	public void concurrentMissesMakeOneQuery() throws Exception {
+		int readers = 32;
+		ExecutorService executor = Executors.newFixedThreadPool(readers);
+		List<Future<DbQueryStatus>> results = new ArrayList<Future<DbQueryStatus>>();
+
+		try {
+			for (int i = 0; i < readers; i++) {
+				results.add(executor.submit(new Callable<DbQueryStatus>() {
+					@Override
+					public DbQueryStatus call() {
+						return cachingSongDal.getSongTitleById(SONG_ID);
+					}
+				}));
+			}
+
+			// Holding the first query open until every reader has had the chance to miss
+			Thread.sleep(200);
+			songDal.release.countDown();
+
+			for (Future<DbQueryStatus> result : results) {
+				assertEquals("Viral Song", result.get().getData());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, songDal.queries.get());
+	}
+
+	@Test
+	public void notFoundIsCached() {
+		songDal.release.countDown();
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(DbQueryExecResult.QUERY_ERROR_NOT_FOUND,
+					cachingSongDal.findSongById(MISSING_SONG_ID).getdbQueryExecResult());
+		}
+
+		assertEquals(1, songDal.queries.get());
+	}
+
+	@Test
+	public void updatesAndDeletesEvict() {
+		songDal.release.countDown();
+
+		cachingSongDal.findSongById(SONG_ID);
+		cachingSongDal.updateSongFavouritesCount(SONG_ID, false);
+		cachingSongDal.findSongById(SONG_ID);
+		cachingSongDal.deleteSongById(SONG_ID);
+		cachingSongDal.findSongById(SONG_ID);
+
+		assertEquals(3, songDal.queries.get());
+	}
+
+	/**
+	 * A SongDal holding a single song, which counts its queries and blocks them until released
+	 */
+	private static class CountingSongDal implements SongDal {
+		private final AtomicInteger queries = new AtomicInteger();
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public DbQueryStatus findSongById(String songId) {
+			queries.incrementAndGet();
+
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (!songId.equals(SONG_ID)) {
+				return new DbQueryStatus("NOT_FOUND", DbQueryExecResult.QUERY_ERROR_NOT_FOUND);
+			}
+
+			Map<String, String> song = new HashMap<String, String>();
+			song.put("id", SONG_ID);
+			song.put(Song.KEY_SONG_NAME, "Viral Song");
+
+			DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(song);
+			return toReturn;
+		}
+
+		@Override
+		public DbQueryStatus updateSongFavouritesCount(String songId, boolean shouldDecrement) {
+			DbQueryStatus toReturn = new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+			toReturn.setData(1L);
+			return toReturn;
+		}
+
+		@Override
+		public DbQueryStatus deleteSongById(String songId) {
+			return new DbQueryStatus("OK", DbQueryExecResult.QUERY_OK);
+		}
+
+		@Override
+		public DbQueryStatus addSong(Song songToAdd) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public DbQueryStatus addSongs(List<Song> songsToAdd) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public DbQueryStatus getSongTitleById(String songId) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public DbQueryStatus getSongTitlesByIds(List<String> songIds) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public DbQueryStatus updateSongFavouritesCounts(String batchId, Map<String, Long> favouritesDeltas,
+				boolean clampNegative) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
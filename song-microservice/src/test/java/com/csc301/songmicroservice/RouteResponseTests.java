@@ -0,0 +1,48 @@
+package com.csc301.songmicroservice;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RouteResponseTests {
+
+	private static final String PATH = "GET http://localhost:3001/getSongById/5d61728193528481fe5a3122";
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+	@Test
+	public void foundSongMatchesMapResponse() throws Exception {
+		Song song = new Song("Viral Song", "Some Artist", null);
+		song.setId(new ObjectId("5d61728193528481fe5a3122"));
+
+		assertSameJson(DbQueryExecResult.QUERY_OK, song.getJsonRepresentation());
+	}
+
+	@Test
+	public void foundTitleMatchesMapResponse() throws Exception {
+		assertSameJson(DbQueryExecResult.QUERY_OK, "Viral \"Song\" é");
+	}
+
+	@Test
+	public void responsesWithoutDataMatchMapResponse() throws Exception {
+		assertSameJson(DbQueryExecResult.QUERY_OK, null);
+		assertSameJson(DbQueryExecResult.QUERY_ERROR_NOT_FOUND, "ignored");
+		assertSameJson(DbQueryExecResult.QUERY_ERROR_GENERIC, "ignored");
+	}
+
+	private void assertSameJson(DbQueryExecResult dbQueryExecResult, Object data) throws Exception {
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("path", PATH);
+		response = Utils.setResponseStatus(response, dbQueryExecResult, data);
+
+		assertEquals(mapper.writeValueAsString(response),
+				mapper.writeValueAsString(new RouteResponse(PATH, dbQueryExecResult, data)));
+	}
+}
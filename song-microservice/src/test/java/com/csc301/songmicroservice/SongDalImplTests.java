@@ -0,0 +1,235 @@
+package com.csc301.songmicroservice;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SongDalImplTests {
+
+	private static final int LIKERS = 64;
+	private static final int LIKES_PER_LIKER = 20;
+
+	@Autowired
+	private SongDalImpl songDal;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${spring.data.mongodb.host}")
+	private String mongoHost;
+
+	@Value("${spring.data.mongodb.port}")
+	private int mongoPort;
+
+	private String songId;
+
+	// A second song, for the tests that change more than one
+	private String otherSongId;
+
+	@Before
+	public void setUp() {
+		// These tests need a running MongoDB, so they are skipped when there is none to talk to
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(mongoHost, mongoPort), 500);
+		} catch (IOException e) {
+			Assume.assumeNoException("MongoDB is not reachable", e);
+		}
+
+		DbQueryStatus added = songDal.addSong(new Song("Stress Test", "Test Artist", "Test Album"));
+		songId = ((Map<String, String>) added.getData()).get("id");
+	}
+
+	@After
+	public void tearDown() {
+		if (songId != null) {
+			songDal.deleteSongById(songId);
+		}
+		if (otherSongId != null) {
+			songDal.deleteSongById(otherSongId);
+		}
+	}
+
+	@Test
+	public void concurrentLikesAreNotLost() throws Exception {
+		List<Future<DbQueryExecResult>> results = runConcurrently(LIKERS * LIKES_PER_LIKER, false);
+
+		for (Future<DbQueryExecResult> result : results) {
+			assertEquals(DbQueryExecResult.QUERY_OK, result.get());
+		}
+		assertEquals(String.valueOf(LIKERS * LIKES_PER_LIKER), favourites());
+	}
+
+	@Test
+	public void concurrentUnlikesNeverGoNegative() throws Exception {
+		int initialLikes = 10;
+		for (int i = 0; i < initialLikes; i++) {
+			songDal.updateSongFavouritesCount(songId, false);
+		}
+
+		List<Future<DbQueryExecResult>> results = runConcurrently(LIKERS, true);
+
+		int applied = 0;
+		for (Future<DbQueryExecResult> result : results) {
+			if (result.get() == DbQueryExecResult.QUERY_OK) {
+				applied++;
+			}
+		}
+		assertEquals(initialLikes, applied);
+		assertEquals("0", favourites());
+	}
+
+	@Test
+	public void bulkDeltasReportPerSongResults() {
+		String missingSongId = "5d61728193528481fe5a3123";
+
+		Map<String, Long> favouritesDeltas = new LinkedHashMap<String, Long>();
+		favouritesDeltas.put(songId, 5L);
+		favouritesDeltas.put(missingSongId, 1L);
+
+		Map<String, String> results = bulkUpdate(favouritesDeltas, true);
+		assertEquals(SongDalImpl.FAVOURITES_APPLIED, results.get(songId));
+		assertEquals(SongDalImpl.FAVOURITES_NOT_FOUND, results.get(missingSongId));
+		assertEquals("5", favourites());
+
+		Map<String, Long> tooManyUnlikes = new LinkedHashMap<String, Long>();
+		tooManyUnlikes.put(songId, -10L);
+
+		assertEquals(SongDalImpl.FAVOURITES_REJECTED, bulkUpdate(tooManyUnlikes, false).get(songId));
+		assertEquals("5", favourites());
+
+		assertEquals(SongDalImpl.FAVOURITES_CLAMPED, bulkUpdate(tooManyUnlikes, true).get(songId));
+		assertEquals("0", favourites());
+
+		// A song given null rather than a change is rejected, without failing the rest of the batch
+		Map<String, Long> missingDelta = new LinkedHashMap<String, Long>();
+		missingDelta.put(songId, null);
+		missingDelta.put(missingSongId, 1L);
+
+		results = bulkUpdate(missingDelta, true);
+		assertEquals(SongDalImpl.FAVOURITES_REJECTED, results.get(songId));
+		assertEquals(SongDalImpl.FAVOURITES_NOT_FOUND, results.get(missingSongId));
+		assertEquals("0", favourites());
+	}
+
+	@Test
+	public void resentBatchIsAppliedOnce() {
+		String batchId = UUID.randomUUID().toString();
+		Map<String, Long> favouritesDeltas = Collections.singletonMap(songId, 3L);
+
+		assertEquals(SongDalImpl.FAVOURITES_APPLIED, bulkUpdate(batchId, favouritesDeltas).get(songId));
+
+		// The batch is sent again, as if the response to the first attempt had been lost
+		assertEquals(SongDalImpl.FAVOURITES_DUPLICATE, bulkUpdate(batchId, favouritesDeltas).get(songId));
+		assertEquals("3", favourites());
+	}
+
+	@Test
+	public void partlyFailedBatchIsOnlyAppliedToTheRestWhenResent() {
+		DbQueryStatus added = songDal.addSong(new Song("Broken Count", "Test Artist", "Test Album"));
+		otherSongId = ((Map<String, String>) added.getData()).get("id");
+
+		// A count that can't be incremented, so that the other song's update fails while this one's succeeds
+		setFavouritesCount(otherSongId, "broken");
+
+		String batchId = UUID.randomUUID().toString();
+		Map<String, Long> favouritesDeltas = new LinkedHashMap<String, Long>();
+		favouritesDeltas.put(songId, 2L);
+		favouritesDeltas.put(otherSongId, 4L);
+
+		DbQueryStatus partlyApplied = songDal.updateSongFavouritesCounts(batchId, favouritesDeltas, true);
+		Map<String, String> results = (Map<String, String>) partlyApplied.getData();
+
+		assertEquals(DbQueryExecResult.QUERY_ERROR_GENERIC, partlyApplied.getdbQueryExecResult());
+		assertEquals(SongDalImpl.FAVOURITES_APPLIED, results.get(songId));
+		assertEquals(SongDalImpl.FAVOURITES_ERROR, results.get(otherSongId));
+		assertEquals("2", favourites());
+
+		// Once the count is fixed, sending the batch again only applies it to the song it failed on
+		setFavouritesCount(otherSongId, 0L);
+		results = bulkUpdate(batchId, favouritesDeltas);
+
+		assertEquals(SongDalImpl.FAVOURITES_DUPLICATE, results.get(songId));
+		assertEquals(SongDalImpl.FAVOURITES_APPLIED, results.get(otherSongId));
+		assertEquals("2", favourites());
+		assertEquals("4", favourites(otherSongId));
+
+		// Now that the whole batch was applied, it is dropped if it is sent yet again
+		assertEquals(SongDalImpl.FAVOURITES_DUPLICATE, bulkUpdate(batchId, favouritesDeltas).get(otherSongId));
+	}
+
+	private void setFavouritesCount(String songId, Object count) {
+		mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(new ObjectId(songId))),
+				new Update().set("songAmountFavourites", count), Song.class);
+	}
+
+	private Map<String, String> bulkUpdate(Map<String, Long> favouritesDeltas, boolean clampNegative) {
+		return (Map<String, String>) songDal.updateSongFavouritesCounts(null, favouritesDeltas, clampNegative)
+				.getData();
+	}
+
+	private Map<String, String> bulkUpdate(String batchId, Map<String, Long> favouritesDeltas) {
+		return (Map<String, String>) songDal.updateSongFavouritesCounts(batchId, favouritesDeltas, true).getData();
+	}
+
+	private List<Future<DbQueryExecResult>> runConcurrently(int updates, final boolean shouldDecrement)
+			throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(LIKERS);
+		final CountDownLatch startGate = new CountDownLatch(1);
+		List<Future<DbQueryExecResult>> results = new ArrayList<Future<DbQueryExecResult>>();
+
+		try {
+			for (int i = 0; i < updates; i++) {
+				results.add(executor.submit(new Callable<DbQueryExecResult>() {
+					@Override
+					public DbQueryExecResult call() throws Exception {
+						startGate.await();
+						return songDal.updateSongFavouritesCount(songId, shouldDecrement).getdbQueryExecResult();
+					}
+				}));
+			}
+			startGate.countDown();
+		} finally {
+			executor.shutdown();
+		}
+
+		return results;
+	}
+
+	private String favourites() {
+		return favourites(songId);
+	}
+
+	private String favourites(String songId) {
+		return ((Map<String, String>) songDal.findSongById(songId).getData()).get("songAmountFavourites");
+	}
+}
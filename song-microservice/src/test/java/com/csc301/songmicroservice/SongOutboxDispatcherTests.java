@@ -0,0 +1,191 @@
+package com.csc301.songmicroservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.OkHttpClient;
+
+public class SongOutboxDispatcherTests {
+
+	private static final int BATCH_SIZE = 2;
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+	private static final long MAX_BACKOFF_MILLIS = 60000;
+
+	private MongoTemplate db;
+	private FakeProfileServiceClient profileServiceClient;
+	private SongOutboxDispatcher dispatcher;
+
+	@Before
+	public void setUp() {
+		db = mock(MongoTemplate.class);
+		profileServiceClient = new FakeProfileServiceClient();
+		dispatcher = new SongOutboxDispatcher(db, profileServiceClient, BATCH_SIZE, INITIAL_BACKOFF_MILLIS,
+				MAX_BACKOFF_MILLIS);
+	}
+
+	@Test
+	public void deliveredAddsAreCleared() {
+		List<Song> dueSongs = dueSongs(0, 0);
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(dueSongs);
+
+		// A full batch was delivered, so more events may be waiting
+		assertTrue(dispatcher.dispatchBatch(Song.OUTBOX_EVENT_ADD));
+		assertEquals(songIds(dueSongs), profileServiceClient.added);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(db).updateMulti(query.capture(), update.capture(), eq(Song.class));
+
+		assertEquals(Song.OUTBOX_EVENT_ADD, query.getValue().getQueryObject().get("outboxEvent"));
+		Document unset = (Document) update.getValue().getUpdateObject().get("$unset");
+		assertTrue(unset.containsKey("outboxEvent"));
+		assertTrue(unset.containsKey("outboxAttempts"));
+		assertTrue(unset.containsKey("outboxNextAttemptAt"));
+		verify(db, never()).remove(any(Query.class), eq(Song.class));
+	}
+
+	@Test
+	public void failedBatchBacksOff() {
+		// The batch has already failed twice, so the next attempt is within the upper half of a 4 second window
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(dueSongs(1, 2));
+		profileServiceClient.delivering = false;
+
+		long before = System.currentTimeMillis();
+		assertFalse(dispatcher.dispatchBatch(Song.OUTBOX_EVENT_ADD));
+		long after = System.currentTimeMillis();
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(db).updateMulti(any(Query.class), update.capture(), eq(Song.class));
+
+		Document retry = update.getValue().getUpdateObject();
+		assertEquals(1, ((Document) retry.get("$inc")).get("outboxAttempts"));
+
+		long nextAttemptAt = (Long) ((Document) retry.get("$set")).get("outboxNextAttemptAt");
+		assertTrue(nextAttemptAt >= before + 2000);
+		assertTrue(nextAttemptAt <= after + 4000);
+	}
+
+	@Test
+	public void backoffIsCappedAtMaximum() {
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(dueSongs(50));
+		profileServiceClient.delivering = false;
+
+		long before = System.currentTimeMillis();
+		dispatcher.dispatchBatch(Song.OUTBOX_EVENT_ADD);
+		long after = System.currentTimeMillis();
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(db).updateMulti(any(Query.class), update.capture(), eq(Song.class));
+
+		long nextAttemptAt = (Long) ((Document) update.getValue().getUpdateObject().get("$set"))
+				.get("outboxNextAttemptAt");
+		assertTrue(nextAttemptAt >= before + MAX_BACKOFF_MILLIS / 2);
+		assertTrue(nextAttemptAt <= after + MAX_BACKOFF_MILLIS);
+	}
+
+	@Test
+	public void deliveredDeletesAreRemoved() {
+		List<Song> dueSongs = dueSongs(0);
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(dueSongs);
+
+		// Fewer songs than a full batch were due, so there are none left waiting
+		assertFalse(dispatcher.dispatchBatch(Song.OUTBOX_EVENT_DELETE));
+		assertEquals(songIds(dueSongs), profileServiceClient.deleted);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(db).remove(query.capture(), eq(Song.class));
+
+		// Only songs still waiting to be deleted are removed
+		assertEquals(Song.OUTBOX_EVENT_DELETE, query.getValue().getQueryObject().get("outboxEvent"));
+		verify(db, never()).updateMulti(any(Query.class), any(Update.class), eq(Song.class));
+	}
+
+	@Test
+	public void failedDeletesAreKept() {
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(dueSongs(0));
+		profileServiceClient.delivering = false;
+
+		assertFalse(dispatcher.dispatchBatch(Song.OUTBOX_EVENT_DELETE));
+
+		verify(db, never()).remove(any(Query.class), eq(Song.class));
+		verify(db).updateMulti(any(Query.class), any(Update.class), eq(Song.class));
+	}
+
+	@Test
+	public void nothingDueSendsNothing() {
+		when(db.find(any(Query.class), eq(Song.class))).thenReturn(new ArrayList<Song>());
+
+		assertFalse(dispatcher.dispatchBatch(Song.OUTBOX_EVENT_ADD));
+		assertTrue(profileServiceClient.added.isEmpty());
+	}
+
+	private static List<Song> dueSongs(int... attempts) {
+		List<Song> songs = new ArrayList<Song>();
+
+		for (int songAttempts : attempts) {
+			Song song = new Song("Outbox Song", "Outbox Artist", "Outbox Album");
+			song.setId(new ObjectId());
+			song.setOutboxAttempts(songAttempts);
+			songs.add(song);
+		}
+
+		return songs;
+	}
+
+	private static List<String> songIds(List<Song> songs) {
+		List<String> songIds = new ArrayList<String>();
+
+		for (Song song : songs) {
+			songIds.add(song.getId());
+		}
+
+		return songIds;
+	}
+
+	/**
+	 * A client that records the songs it is asked to send instead of calling the Profile Microservice, and reports them
+	 * delivered while delivering is set
+	 */
+	private static class FakeProfileServiceClient extends ProfileServiceClient {
+		private final List<String> added = new ArrayList<String>();
+		private final List<String> deleted = new ArrayList<String>();
+		private boolean delivering = true;
+
+		private FakeProfileServiceClient() {
+			super(new ObjectMapper(), "http://localhost:3002", new OkHttpClient());
+		}
+
+		@Override
+		public boolean addSongs(List<String> songIds) {
+			added.addAll(songIds);
+			return delivering;
+		}
+
+		@Override
+		public boolean deleteSongs(List<String> songIds) {
+			deleted.addAll(songIds);
+			return delivering;
+		}
+	}
+}